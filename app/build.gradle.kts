@@ -16,8 +16,17 @@ android {
         testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
     }
 
+    buildFeatures {
+        buildConfig = true
+    }
+
 
 
+    testOptions {
+        // USSDLog calls android.util.Log; let JVM tests run through it
+        unitTests.isReturnDefaultValues = true
+    }
+
     compileOptions {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
@@ -25,6 +34,7 @@ android {
 }
 
 dependencies {
+    implementation(project(":ussd-core"))
     implementation(libs.appcompat)
     implementation(libs.material)
     implementation(libs.activity)
@@ -18,4 +18,10 @@
 
 # If you keep the line number information, uncomment this to
 # hide the original source file name.
-#-renamesourcefileattribute SourceFile
\ No newline at end of file
+#-renamesourcefileattribute SourceFile
+
+# Drop USSD debug logging from minified builds; call sites already skip
+# building the message when USSDLog.DEBUG is false.
+-assumenosideeffects class com.example.inbuiltussd.USSDLog {
+    public static void d(...);
+}
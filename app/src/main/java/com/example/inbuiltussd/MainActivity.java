@@ -39,6 +39,7 @@ public class MainActivity extends AppCompatActivity {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
+        USSDCarrierSettings.applyExtras(this, getIntent());
 
         initializeViews();
         setupUSSDReceiver();
@@ -47,6 +48,12 @@ public class MainActivity extends AppCompatActivity {
         Log.d(TAG, "🚀 MainActivity Started - USSD Ready");
     }
 
+    @Override
+    protected void onNewIntent(Intent intent) {
+        super.onNewIntent(intent);
+        USSDCarrierSettings.applyExtras(this, intent);
+    }
+
     private void initializeViews() {
         startUssdButton = findViewById(R.id.startUssdButton);
         sendInputButton = findViewById(R.id.sendInputButton);
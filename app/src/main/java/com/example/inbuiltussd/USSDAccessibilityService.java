@@ -4,90 +4,391 @@ import android.accessibilityservice.AccessibilityService;
 import android.accessibilityservice.AccessibilityServiceInfo;
 import android.content.Intent;
 import android.net.Uri;
-import android.os.Bundle;
 import android.os.Handler;
-import android.util.Log;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
 import android.view.accessibility.AccessibilityEvent;
 import android.view.accessibility.AccessibilityNodeInfo;
+import android.view.accessibility.AccessibilityWindowInfo;
 import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class USSDAccessibilityService extends AccessibilityService {
     private static final String TAG = "USSD_Accessibility";
-    private Handler handler = new Handler();
+    private static final String[] DIALER_PACKAGES = {
+            "com.android.phone",
+            "com.google.android.dialer",
+            "com.samsung.android.dialer",
+            "com.android.incallui"
+    };
+
+    // Subscription per phase: nothing while idle, full dialog changes during a session
+    private static final int IDLE_EVENT_TYPES = 0;
+    private static final long IDLE_NOTIFICATION_TIMEOUT_MS = 1000;
+    private static final int ACTIVE_EVENT_TYPES = AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED |
+            AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED;
+    private static final long ACTIVE_NOTIFICATION_TIMEOUT_MS = 50;
+
+    // Carriers drop a USSD session after ~180 s, so a silent dialog means it is over
+    private static final long SESSION_IDLE_TIMEOUT_MS = 180_000;
+    private static final String DEFAULT_PIN = "0303";
+
+    // Everything below the event intake runs on this thread
+    private HandlerThread processingThread;
+    private Handler handler;
+    private final USSDEventRing eventRing = new USSDEventRing();
+    private final USSDEventRing.Record drainRecord = new USSDEventRing.Record();
+    private final AtomicBoolean drainPosted = new AtomicBoolean(false);
+    private final Runnable drainEvents = this::drainEvents;
+    private final Runnable sessionIdleTimeout = this::onSessionIdle;
+    private boolean subscriptionActive = false;
+
+    private USSDEventCoalescer eventCoalescer;
+    private final USSDScreenModel screenModel = new USSDScreenModel();
+    private USSDNodeSnapshot activeSnapshot;
+    // Window the dialog's events come from, and its handle cached for the session
+    private int dialogWindowId = -1;
+    private AccessibilityWindowInfo dialogWindow;
+    private int windowLookups = 0;
+    private int activeWindowFallbacks = 0;
+    private USSDActionPipeline actionPipeline;
+    private USSDLocatorCache locatorCache;
+    private String currentDialogKey;
+    private CharSequence currentPackage;
+    private int profileExtractions = 0;
+    private int genericExtractions = 0;
+    private final USSDActionPipeline.Host actionHost = new USSDActionPipeline.Host() {
+        @Override
+        public USSDNodeSnapshot captureDialog() {
+            USSDNodeSnapshot cached = screenModel.get(dialogWindowId);
+            if (cached != null) {
+                activeSnapshot = cached;
+                return cached;
+            }
+            return captureDialogWindow() ? activeSnapshot : null;
+        }
+
+        @Override
+        public String getDialogKey() {
+            return currentDialogKey;
+        }
+
+        @Override
+        public AccessibilityNodeInfo findNode(String locator, int requiredFlag) {
+            return findNodeByLocator(locator, requiredFlag);
+        }
+
+        @Override
+        public void onInputSubmitted(String input, boolean sensitive) {
+            if (recorder != null) recorder.input(input, sensitive, SystemClock.elapsedRealtime());
+            recentScreens.onInputSent();
+            // The reply may arrive in the same window; classify it from scratch
+            streamingClassifier.reset();
+            isWaitingForInput = false;
+            pendingInput = null;
+        }
+
+        @Override
+        public void onInputFailed(String input, String reason) {
+            isWaitingForInput = false;
+            pendingInput = null;
+            broadcastToApp("INPUT_FAILED", reason, currentSessionId);
+        }
+    };
     private String currentSessionId;
     private String pendingInput;
     private boolean isWaitingForInput = false;
-    private boolean isUSSDInProgress = false;
+    private volatile boolean isUSSDInProgress = false;
     private boolean hasDialedUSSD = false;
 
-    // Add this to track last processed content and prevent duplicates
-    private String lastProcessedText = "";
-    private long lastProcessedTime = 0;
+    // A PIN prompt that comes back after the auto-filled PIN means it was rejected;
+    // sending it again only counts down to a lockout
+    private static final int MAX_AUTO_PINS = 1;
+    private int autoPinsSent = 0;
+
+    // Fingerprints of recently processed screens, to prevent duplicates
+    private final USSDRecentScreens recentScreens = new USSDRecentScreens();
+    private final USSDTextNormalizer textNormalizer = new USSDTextNormalizer();
+    // Recurring screens, already classified
+    private final USSDScreenTemplates screenTemplates = new USSDScreenTemplates();
+
+    // Operator rule packs, and the classifier picked for the code being run; all three
+    // are set on the worker thread before any command runs
+    private USSDRulePacks rulePacks;
+    private USSDClassifier activeClassifier;
+    private USSDStreamingClassifier streamingClassifier;
+    private int earlyDecisions = 0;
+    // Screen whose PIN prompt was answered before the dialog settled
+    private long earlyPinFingerprint = USSDScreenFingerprint.EMPTY;
+
+    // Binary log of the current session, when START_USSD asks for one
+    private USSDSessionRecorder recorder;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        processingThread = new HandlerThread("USSDProcessing", Process.THREAD_PRIORITY_FOREGROUND);
+        processingThread.start();
+        handler = new Handler(processingThread.getLooper());
+        eventCoalescer = new USSDEventCoalescer(handler, this::processUSSDDialog);
+        locatorCache = new USSDLocatorCache(getSharedPreferences(USSDLocatorCache.PREFS_NAME, MODE_PRIVATE));
+        actionPipeline = new USSDActionPipeline(handler, actionHost, locatorCache);
+        handler.post(this::reloadRulePacks);
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        handler.removeCallbacksAndMessages(null);
+        handler.post(() -> closeRecorder("destroyed"));
+        processingThread.quitSafely();
+        eventRing.clear();
+    }
 
     @Override
     public void onAccessibilityEvent(AccessibilityEvent event) {
-        if (isUSSDDialog(event) && isUSSDInProgress) {
-            Log.d(TAG, "🎯 USSD Dialog Detected");
+        // Intake only copies a few fields into the ring; all processing happens on the worker
+        if (isUSSDInProgress && isUSSDDialog(event)) {
+            int eventType = event.getEventType();
+            int changeTypes = event.getContentChangeTypes();
+
+            // Only a pooled copy of the event: the worker fetches the source from it,
+            // since getSource is a binder call and the original is recycled on return
+            AccessibilityEvent copy = null;
+            if (eventType == AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED
+                    && USSDScreenModel.isPatchableChange(changeTypes)) {
+                copy = AccessibilityEvent.obtain(event);
+            }
 
-            handler.postDelayed(() -> {
-                processUSSDDialog();
-            }, 1000);
+            eventRing.offer(event.getPackageName(), event.getClassName(), event.getWindowId(),
+                    eventType, changeTypes, event.getEventTime(), event.getText(), copy);
+            if (drainPosted.compareAndSet(false, true)) {
+                handler.post(drainEvents);
+            }
+        }
+    }
+
+    private void drainEvents() {
+        drainPosted.set(false);
+        armIdleTimeout();
+
+        if (eventRing.consumeOverflow()) {
+            // Dropped events may have carried structural changes
+            USSDLog.w(TAG, "⚠️ Event ring overflow: " + eventRing.getStatsSummary());
+            screenModel.invalidateAll();
+        }
+
+        while (eventRing.poll(drainRecord)) {
+            handleEvent(drainRecord);
+            drainRecord.clear();
+        }
+    }
+
+    private void handleEvent(USSDEventRing.Record record) {
+        if (!isUSSDInProgress) {
+            if (record.event != null) record.event.recycle();
+            return;
+        }
+
+        if (record.event != null) {
+            // The changed node, fetched here so the IPC stays off the main thread
+            record.source = record.event.getSource();
+            record.event.recycle();
+            record.event = null;
+        }
+
+        USSDLog.d(TAG, "🎯 USSD Dialog Detected");
+        currentPackage = record.packageName;
+        dialogWindowId = record.windowId;
+        if (record.eventType == AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED) {
+            if (record.className != null) {
+                currentDialogKey = record.packageName + "/" + record.className;
+            }
+            // A new dialog window: whatever it shows is a new screen even if the text repeats
+            recentScreens.clear();
+            streamingClassifier.reset(activeClassifier);
+            earlyPinFingerprint = USSDScreenFingerprint.EMPTY;
+        }
+        USSDResponse.ResponseType earlyDecision = classifyFragments(record);
+        updateScreenModel(record);
+
+        // Bursts of content changes collapse into one pass per window
+        eventCoalescer.schedule(record.windowId);
+
+        if (earlyDecision == USSDResponse.ResponseType.PIN_PROMPT) {
+            // Start typing the PIN now rather than after the quiet period; the settled
+            // pass stays scheduled and is the only one that reports the screen
+            earlyDecisions++;
+            if (USSDLog.DEBUG) USSDLog.d(TAG, "⚡ Early decision: " + earlyDecision);
+            answerPinEarly(record.windowId);
+        }
+        actionPipeline.onScreenChanged();
+    }
+
+    // Fills the PIN if the text rendered so far is a PIN prompt; no broadcast, no history
+    private void answerPinEarly(int windowId) {
+        try {
+            CharSequence ussdText = extractMessageText(windowId);
+            if (ussdText == null) return;
+
+            // Classified afresh, not through the template table: a half-rendered screen
+            // must not be kept for the settled pass
+            USSDResponse response = new USSDResponse(ussdText.toString(), activeClassifier);
+            if (response.getAction() != USSDResponse.Action.AUTO_PIN
+                    || !mayAutoFillPin(response.getCleanResponse())) return;
+
+            if (!isWaitingForInput && !actionPipeline.isRunning()) {
+                // Logged now so the PIN input follows its screen; the settled pass skips it
+                if (recorder != null) {
+                    recorder.screen(ussdText, response.getFingerprint(), response.getType(),
+                            SystemClock.elapsedRealtime());
+                }
+                startAutoPin();
+                earlyPinFingerprint = response.getFingerprint();
+            }
+        } catch (Exception e) {
+            USSDLog.e(TAG, "❌ Error reading early PIN prompt: " + e.getMessage());
+        }
+    }
+
+    // Feeds the text this event carries to the streaming classifier
+    private USSDResponse.ResponseType classifyFragments(USSDEventRing.Record record) {
+        USSDResponse.ResponseType decision = null;
+        for (int i = 0; i < record.textCount; i++) {
+            USSDResponse.ResponseType fragmentDecision = streamingClassifier.feed(record.texts[i]);
+            if (fragmentDecision != null) decision = fragmentDecision;
+        }
+        if (record.source != null) {
+            USSDResponse.ResponseType fragmentDecision = streamingClassifier.feed(record.source.getText());
+            if (fragmentDecision != null) decision = fragmentDecision;
+        }
+        return decision;
+    }
+
+    private void updateScreenModel(USSDEventRing.Record record) {
+        if (record.source != null && screenModel.canPatch(record.windowId, record.contentChangeTypes)) {
+            // Only one view's text changed - patch it instead of re-walking the window
+            screenModel.applyChange(record.windowId, record.source);
+        } else {
+            if (record.source != null) record.source.recycle();
+            screenModel.invalidate(record.windowId);
         }
     }
 
     @Override
     public void onInterrupt() {
-        Log.w(TAG, "⚠️ Service Interrupted");
-        resetSession();
+        USSDLog.w(TAG, "⚠️ Service Interrupted");
+        handler.post(this::resetSession);
     }
 
     @Override
     public void onServiceConnected() {
-        Log.d(TAG, "✅ USSD Service Connected");
-        setupService();
-    }
-
-    private void setupService() {
-        AccessibilityServiceInfo info = new AccessibilityServiceInfo();
-        info.eventTypes = AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED |
-                AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED;
-        info.packageNames = new String[]{
-                "com.android.phone",
-                "com.google.android.dialer",
-                "com.samsung.android.dialer",
-                "com.android.incallui"
-        };
+        USSDLog.d(TAG, "✅ USSD Service Connected");
+        handler.post(() -> setupService(false));
+    }
+
+    private void setupService(boolean active) {
+        // Start from the declared info so the XML flags (view ids, window content) survive
+        AccessibilityServiceInfo info = getServiceInfo();
+        if (info == null) {
+            info = new AccessibilityServiceInfo();
+        }
+        info.eventTypes = active ? ACTIVE_EVENT_TYPES : IDLE_EVENT_TYPES;
+        info.packageNames = DIALER_PACKAGES.clone();
         info.feedbackType = AccessibilityServiceInfo.FEEDBACK_GENERIC;
-        info.notificationTimeout = 100;
+        info.flags |= AccessibilityServiceInfo.FLAG_REPORT_VIEW_IDS |
+                AccessibilityServiceInfo.FLAG_RETRIEVE_INTERACTIVE_WINDOWS;
+        info.notificationTimeout = active ? ACTIVE_NOTIFICATION_TIMEOUT_MS : IDLE_NOTIFICATION_TIMEOUT_MS;
         setServiceInfo(info);
+
+        subscriptionActive = active;
+        USSDLog.d(TAG, active ? "📡 Subscribed to dialer events" : "💤 Dialer events paused");
+    }
+
+    private void setSubscriptionActive(boolean active) {
+        if (subscriptionActive != active) {
+            setupService(active);
+        }
+    }
+
+    private void armIdleTimeout() {
+        handler.removeCallbacks(sessionIdleTimeout);
+        handler.postDelayed(sessionIdleTimeout, SESSION_IDLE_TIMEOUT_MS);
+    }
+
+    private void onSessionIdle() {
+        USSDLog.w(TAG, "⚠️ No dialog activity, ending idle session");
+        broadcastToApp("SESSION_TIMEOUT", "USSD session timed out", currentSessionId);
+        closeRecorder("timeout");
+        resetSession();
     }
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         if (intent != null) {
-            String action = intent.getAction();
-            if ("START_USSD".equals(action)) {
-                String ussdCode = intent.getStringExtra("ussd_code");
-                currentSessionId = intent.getStringExtra("session_id");
-
-                // Reset flags for new session
-                isUSSDInProgress = false;
-                hasDialedUSSD = false;
-
-                startUSSDProcess(ussdCode);
-            } else if ("SEND_INPUT".equals(action)) {
-                pendingInput = intent.getStringExtra("user_input");
-                currentSessionId = intent.getStringExtra("session_id");
-                isWaitingForInput = true;
-                processPendingInput();
-            }
+            handler.post(() -> handleCommand(intent));
         }
         return START_STICKY;
     }
 
+    private void handleCommand(Intent intent) {
+        String action = intent.getAction();
+        if ("START_USSD".equals(action)) {
+            String ussdCode = intent.getStringExtra("ussd_code");
+            currentSessionId = intent.getStringExtra("session_id");
+
+            long quietPeriodMs = intent.getLongExtra("quiet_period_ms", USSDEventCoalescer.DEFAULT_QUIET_PERIOD_MS);
+            eventCoalescer.setQuietPeriodMs(quietPeriodMs);
+            eventCoalescer.resetStats();
+            screenModel.setIncrementalEnabled(intent.getBooleanExtra("incremental", true));
+            screenModel.resetStats();
+            eventRing.resetStats();
+
+            USSDRulePack rulePack = rulePacks.forCode(ussdCode);
+            activeClassifier = rulePack.getClassifier();
+            streamingClassifier.reset(activeClassifier);
+            if (USSDLog.DEBUG) USSDLog.d(TAG, "📦 Rule pack: " + rulePack.getId());
+
+            closeRecorder("restarted");
+            if (intent.getBooleanExtra("record_session", false)) {
+                recorder = USSDSessionRecordings.open(this, currentSessionId);
+                if (recorder != null) {
+                    recorder.startSession(ussdCode, rulePack.getId(), SystemClock.elapsedRealtime(),
+                            System.currentTimeMillis());
+                }
+            }
+
+            // Reset flags for new session
+            isUSSDInProgress = false;
+            hasDialedUSSD = false;
+
+            setSubscriptionActive(true);
+            armIdleTimeout();
+
+            startUSSDProcess(ussdCode);
+        } else if ("SEND_INPUT".equals(action)) {
+            pendingInput = intent.getStringExtra("user_input");
+            currentSessionId = intent.getStringExtra("session_id");
+            isWaitingForInput = true;
+            processPendingInput();
+        } else if ("RELOAD_RULES".equals(action)) {
+            reloadRulePacks();
+        }
+    }
+
+    // Compiled once here; screens only run the compiled automaton
+    private void reloadRulePacks() {
+        rulePacks = USSDRulePackLoader.load(this);
+        if (activeClassifier == null) {
+            activeClassifier = rulePacks.getDefault().getClassifier();
+            streamingClassifier = new USSDStreamingClassifier(activeClassifier);
+        }
+    }
+
     private void startUSSDProcess(String ussdCode) {
-        Log.d(TAG, "🎯 Starting USSD: " + ussdCode);
+        if (USSDLog.DEBUG) USSDLog.d(TAG, "🎯 Starting USSD: " + ussdCode);
         broadcastToApp("SESSION_STARTED", "Starting USSD session", currentSessionId);
 
         // Only dial if not already dialed
@@ -109,263 +410,361 @@ public class USSDAccessibilityService extends AccessibilityService {
             intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
             startActivity(intent);
 
-            Log.d(TAG, "📞 Dialed USSD: " + ussdCode);
+            if (USSDLog.DEBUG) USSDLog.d(TAG, "📞 Dialed USSD: " + ussdCode);
             isUSSDInProgress = true;
 
         } catch (Exception e) {
-            Log.e(TAG, "❌ USSD Dial Error: " + e.getMessage());
+            USSDLog.e(TAG, "❌ USSD Dial Error: " + e.getMessage());
             broadcastToApp("ERROR", "Failed to dial USSD", currentSessionId);
             resetSession();
         }
     }
 
     private boolean isUSSDDialog(AccessibilityEvent event) {
-        if (event == null) return false;
-
-        String packageName = event.getPackageName() != null ? event.getPackageName().toString() : "";
-        String className = event.getClassName() != null ? event.getClassName().toString() : "";
+        return event != null && isDialerPackage(event.getPackageName());
+    }
 
-        boolean isUSSD = packageName.contains("com.android.phone") ||
-                packageName.contains("dialer") ||
-                packageName.contains("incallui");
+    // Runs for every event: compares against the subscribed packages without allocating
+    static boolean isDialerPackage(CharSequence packageName) {
+        if (packageName == null) return false;
 
-        Log.d(TAG, "🔍 Checking USSD - Package: " + packageName + ", Class: " + className + ", isUSSD: " + isUSSD);
-        return isUSSD;
+        int length = packageName.length();
+        for (String dialerPackage : DIALER_PACKAGES) {
+            if (dialerPackage.length() == length && dialerPackage.contentEquals(packageName)) return true;
+        }
+        return false;
     }
 
-    private void processUSSDDialog() {
-        Log.d(TAG, "🔄 Processing USSD Dialog");
+    private void processUSSDDialog(int windowId, int eventCount) {
+        if (USSDLog.DEBUG) USSDLog.d(TAG, "🔄 Processing USSD Dialog (window " + windowId + ", " + eventCount + " events)");
 
-        AccessibilityNodeInfo rootNode = getRootInActiveWindow();
-        if (rootNode == null) {
-            Log.w(TAG, "⚠️ No root node found");
-            return;
-        }
+        dialogWindowId = windowId;
+        // Whatever arrives from here on belongs to the next rendering
+        streamingClassifier.reset();
 
         try {
-            String ussdText = extractUSSDText(rootNode);
-            Log.d(TAG, "📄 USSD Content:\n" + ussdText);
+            CharSequence ussdText = extractMessageText(windowId);
+            if (ussdText == null) {
+                USSDLog.w(TAG, "⚠️ No root node found");
+                return;
+            }
+            if (USSDLog.DEBUG) USSDLog.d(TAG, "📄 USSD Content:\n" + ussdText);
 
             // Prevent processing the same content multiple times
-            if (shouldProcessUSSDText(ussdText)) {
-                lastProcessedText = ussdText;
-                lastProcessedTime = System.currentTimeMillis();
-
-                if (!ussdText.trim().isEmpty()) {
-                    analyzeAndRespond(ussdText, rootNode);
-                } else {
-                    Log.w(TAG, "⚠️ Empty USSD response");
-                }
+            USSDResponse response = readResponse(ussdText);
+            if (response != null && recorder != null && response.getFingerprint() != earlyPinFingerprint) {
+                // Raw text, so a replay exercises normalization too
+                recorder.screen(ussdText, response.getFingerprint(), response.getType(), SystemClock.elapsedRealtime());
+            }
+            if (response != null && recentScreens.offer(response.getFingerprint())) {
+                analyzeAndRespond(response);
             } else {
-                Log.d(TAG, "⏭️ Skipping duplicate USSD content");
+                USSDLog.d(TAG, "⏭️ Skipping duplicate USSD content");
             }
 
         } catch (Exception e) {
-            Log.e(TAG, "❌ Error processing USSD: " + e.getMessage());
-        } finally {
-            rootNode.recycle();
+            USSDLog.e(TAG, "❌ Error processing USSD: " + e.getMessage());
         }
     }
 
-    private boolean shouldProcessUSSDText(String currentText) {
-        // Don't process if it's the same text we just processed
-        if (currentText.equals(lastProcessedText)) {
-            return false;
-        }
+    // Message body via the dialer's profile when possible, whole-window text otherwise
+    private CharSequence extractMessageText(int windowId) {
+        USSDExtractionProfile profile = USSDExtractionProfile.forPackage(currentPackage);
 
-        // Don't process if we just processed something very recently (within 2 seconds)
-        long currentTime = System.currentTimeMillis();
-        if (currentTime - lastProcessedTime < 2000) {
-            return false;
+        activeSnapshot = screenModel.get(windowId);
+        if (activeSnapshot != null) {
+            CharSequence message = profile != null ? profile.extract(activeSnapshot) : null;
+            if (message != null) {
+                profileExtractions++;
+                return message;
+            }
+            genericExtractions++;
+            return activeSnapshot.extractText();
         }
 
-        // Don't process empty or very short texts
-        if (currentText.trim().isEmpty() || currentText.length() < 5) {
-            return false;
+        if (profile != null) {
+            CharSequence message = findMessageByProfile(profile);
+            if (message != null) {
+                profileExtractions++;
+                return message;
+            }
         }
 
-        return true;
+        if (!captureDialogWindow()) return null;
+        genericExtractions++;
+        return activeSnapshot.extractText();
     }
 
-    private void analyzeAndRespond(String ussdText, AccessibilityNodeInfo rootNode) {
-        String cleanText = ussdText.toLowerCase();
+    // Reads the message view directly by id, without walking the window
+    private CharSequence findMessageByProfile(USSDExtractionProfile profile) {
+        AccessibilityNodeInfo rootNode = getDialogRoot();
+        if (rootNode == null) return null;
 
-        // Check if this is just the initial dialing screen
-        if (cleanText.contains("dialing") || cleanText.contains("calling") ||
-                cleanText.contains("connecting") || ussdText.contains("*219#")) {
-            Log.d(TAG, "📞 Initial dialing screen - skipping processing");
-            broadcastToApp("DIALING", "Dialing USSD code...", currentSessionId);
-            return;
+        try {
+            for (String viewId : profile.getMessageViewIds()) {
+                CharSequence message = null;
+                for (AccessibilityNodeInfo node : rootNode.findAccessibilityNodeInfosByViewId(viewId)) {
+                    if (message == null) {
+                        message = USSDExtractionProfile.trimmedOrNull(node.getText());
+                    }
+                    node.recycle();
+                }
+                if (message != null) return message;
+            }
+            return null;
+        } finally {
+            rootNode.recycle();
         }
+    }
 
-        if (cleanText.contains("pin") || cleanText.contains("password")) {
-            Log.d(TAG, "🔐 PIN Prompt Detected");
-            broadcastToApp("PIN_PROMPT", ussdText, currentSessionId);
-
-            // Auto-fill PIN only once
-            if (!isWaitingForInput) {
-                handler.postDelayed(() -> {
-                    if (isUSSDInProgress) {
-                        enterTextInBackground("0303", rootNode);
-                        broadcastToApp("INPUT_SENT", "Auto-filled PIN", currentSessionId);
-                    }
-                }, 1500);
+    /**
+     * Root of the dialog's own window. The active window is often our activity or the
+     * in-call screen rather than the USSD dialog, so that is only a fallback.
+     */
+    private AccessibilityNodeInfo getDialogRoot() {
+        if (dialogWindowId >= 0) {
+            if (dialogWindow == null || dialogWindow.getId() != dialogWindowId) {
+                lookUpDialogWindow();
             }
 
-        } else if (cleanText.contains("menu") || cleanText.contains("select")) {
-            Log.d(TAG, "📋 Menu Detected");
-            broadcastToApp("MENU_OPTIONS", ussdText, currentSessionId);
+            AccessibilityNodeInfo rootNode = dialogWindow != null ? dialogWindow.getRoot() : null;
+            if (rootNode == null && dialogWindow != null) {
+                // Cached handle went stale (window re-created); look it up once more
+                lookUpDialogWindow();
+                rootNode = dialogWindow != null ? dialogWindow.getRoot() : null;
+            }
+            if (rootNode != null) return rootNode;
+        }
 
-        } else if (cleanText.contains("enter") || cleanText.contains("input")) {
-            Log.d(TAG, "⌨️ Input Required");
-            broadcastToApp("INPUT_REQUIRED", ussdText, currentSessionId);
+        activeWindowFallbacks++;
+        return getRootInActiveWindow();
+    }
 
-        } else if (cleanText.contains("success") || cleanText.contains("completed")) {
-            Log.d(TAG, "✅ Success");
-            broadcastToApp("SUCCESS", ussdText, currentSessionId);
-            resetSession();
+    private void lookUpDialogWindow() {
+        releaseDialogWindow();
+        windowLookups++;
 
-        } else if (cleanText.contains("error") || cleanText.contains("invalid")) {
-            Log.d(TAG, "❌ Error");
-            broadcastToApp("ERROR", ussdText, currentSessionId);
-            resetSession();
+        List<AccessibilityWindowInfo> windows = getWindows();
+        if (windows == null) return;
 
-        } else if (cleanText.contains("welcome")) {
-            Log.d(TAG, "👋 Welcome Screen");
-            broadcastToApp("WELCOME_SCREEN", ussdText, currentSessionId);
+        for (AccessibilityWindowInfo window : windows) {
+            if (dialogWindow == null && window.getId() == dialogWindowId) {
+                dialogWindow = window;
+            } else {
+                window.recycle();
+            }
+        }
+    }
 
-        } else {
-            Log.d(TAG, "📝 General Response");
-            broadcastToApp("USSD_RESPONSE", ussdText, currentSessionId);
+    private void releaseDialogWindow() {
+        if (dialogWindow != null) {
+            dialogWindow.recycle();
+            dialogWindow = null;
         }
     }
 
-    private void processPendingInput() {
-        if (pendingInput != null && isWaitingForInput && isUSSDInProgress) {
-            Log.d(TAG, "🎯 Processing pending input: " + pendingInput);
+    // Full walk; the snapshot is cached per window and keeps its nodes until invalidated
+    private boolean captureDialogWindow() {
+        AccessibilityNodeInfo rootNode = getDialogRoot();
+        if (rootNode == null) return false;
 
-            handler.postDelayed(() -> {
-                AccessibilityNodeInfo rootNode = getRootInActiveWindow();
-                if (rootNode != null) {
-                    enterTextInBackground(pendingInput, rootNode);
-                    rootNode.recycle();
-                }
-            }, 1000);
-        }
+        // Don't adopt the snapshot's window id: the root may be the active-window
+        // fallback, and the dialog id only ever comes from the dialog's own events
+        activeSnapshot = screenModel.capture(rootNode);
+        if (USSDLog.DEBUG) USSDLog.d(TAG, "📸 Captured " + activeSnapshot.size() + " nodes");
+        return true;
     }
 
-    private void enterTextInBackground(String input, AccessibilityNodeInfo rootNode) {
+    // Targeted lookup for a cached locator; one IPC query instead of a full walk
+    private AccessibilityNodeInfo findNodeByLocator(String locator, int requiredFlag) {
+        AccessibilityNodeInfo rootNode = getDialogRoot();
+        if (rootNode == null) return null;
+
         try {
-            // Find input field
-            AccessibilityNodeInfo inputField = findInputField(rootNode);
-            if (inputField != null) {
-                Bundle args = new Bundle();
-                args.putCharSequence(AccessibilityNodeInfo.ACTION_ARGUMENT_SET_TEXT_CHARSEQUENCE, input);
-                boolean success = inputField.performAction(AccessibilityNodeInfo.ACTION_SET_TEXT, args);
-
-                if (success) {
-                    Log.d(TAG, "✅ Input entered: " + input);
-
-                    // Press OK/Send button
-                    handler.postDelayed(() -> {
-                        pressOKButton();
-                    }, 800);
+            List<AccessibilityNodeInfo> matches;
+            if (locator.startsWith(USSDLocatorCache.PREFIX_ID)) {
+                matches = rootNode.findAccessibilityNodeInfosByViewId(locator.substring(USSDLocatorCache.PREFIX_ID.length()));
+            } else if (locator.startsWith(USSDLocatorCache.PREFIX_TEXT)) {
+                matches = rootNode.findAccessibilityNodeInfosByText(locator.substring(USSDLocatorCache.PREFIX_TEXT.length()));
+            } else {
+                return null;
+            }
+
+            AccessibilityNodeInfo found = null;
+            for (AccessibilityNodeInfo match : matches) {
+                boolean usable = requiredFlag == USSDNodeSnapshot.FLAG_EDITABLE ? match.isEditable() : match.isClickable();
+                if (found == null && usable) {
+                    found = match;
+                } else {
+                    match.recycle();
                 }
             }
-        } catch (Exception e) {
-            Log.e(TAG, "❌ Input error: " + e.getMessage());
+            return found;
+        } finally {
+            rootNode.recycle();
         }
-
-        isWaitingForInput = false;
-        pendingInput = null;
     }
 
-    private void resetSession() {
-        isUSSDInProgress = false;
-        hasDialedUSSD = false;
-        isWaitingForInput = false;
-        pendingInput = null;
-        lastProcessedText = "";
-        lastProcessedTime = 0;
-    }
-
-    private AccessibilityNodeInfo findInputField(AccessibilityNodeInfo root) {
-        if (root == null) return null;
+    /**
+     * Response for the screen text, shared from the template table when the screen was
+     * seen before; null for empty or very short texts.
+     */
+    private USSDResponse readResponse(CharSequence currentText) {
+        // Marker stripping and fingerprint in one pass over the text
+        CharSequence normalized = textNormalizer.normalize(currentText);
 
-        // Look for EditText fields
-        List<AccessibilityNodeInfo> editTexts = root.findAccessibilityNodeInfosByViewId("com.android.phone:id/input_field");
-        if (!editTexts.isEmpty()) return editTexts.get(0);
+        // Don't process empty or very short texts
+        if (normalized.length() < 5) {
+            return null;
+        }
 
-        // Fallback to any editable field
-        for (int i = 0; i < root.getChildCount(); i++) {
-            AccessibilityNodeInfo child = root.getChild(i);
-            if (child != null && child.isEditable()) {
-                return child;
-            }
+        long fingerprint = textNormalizer.getFingerprint();
+        if (fingerprint == USSDScreenFingerprint.EMPTY) {
+            USSDLog.w(TAG, "⚠️ Empty USSD response");
+            return null;
         }
-        return null;
-    }
 
-    private void pressOKButton() {
-        AccessibilityNodeInfo root = getRootInActiveWindow();
-        if (root == null) return;
+        return screenTemplates.get(fingerprint, normalized, activeClassifier);
+    }
 
-        try {
-            // Try different button IDs and texts
-            String[] buttonIds = {"android:id/button1", "com.android.phone:id/positiveButton"};
-            String[] buttonTexts = {"ok", "send", "submit", "continue"};
-
-            for (String buttonId : buttonIds) {
-                List<AccessibilityNodeInfo> buttons = root.findAccessibilityNodeInfosByViewId(buttonId);
-                for (AccessibilityNodeInfo button : buttons) {
-                    if (button.isClickable()) {
-                        button.performAction(AccessibilityNodeInfo.ACTION_CLICK);
-                        Log.d(TAG, "✅ Clicked button: " + buttonId);
-                        return;
-                    }
-                }
-            }
+    private void analyzeAndRespond(USSDResponse response) {
+        String ussdText = response.getCleanResponse();
+        switch (response.getType()) {
+            case DIALING:
+                // Just the initial dialing screen
+                USSDLog.d(TAG, "📞 Initial dialing screen - skipping processing");
+                broadcastToApp("DIALING", "Dialing USSD code...", currentSessionId);
+                break;
+
+            case PIN_PROMPT:
+                USSDLog.d(TAG, "🔐 PIN Prompt Detected");
+                broadcastToApp("PIN_PROMPT", ussdText, currentSessionId);
+                break;
+
+            case MAIN_MENU:
+                if (USSDLog.DEBUG) USSDLog.d(TAG, "📋 Menu Detected: " + response.getMenu().size() + " options");
+                broadcastToApp("MENU_OPTIONS", ussdText, currentSessionId);
+                break;
+
+            case INPUT_REQUIRED:
+                USSDLog.d(TAG, "⌨️ Input Required");
+                broadcastToApp("INPUT_REQUIRED", ussdText, currentSessionId);
+                break;
+
+            case TRANSACTION_SUCCESS:
+                USSDLog.d(TAG, "✅ Success");
+                broadcastToApp("SUCCESS", ussdText, currentSessionId);
+                break;
+
+            case ERROR:
+                USSDLog.d(TAG, "❌ Error");
+                broadcastToApp("ERROR", ussdText, currentSessionId);
+                break;
+
+            case WELCOME:
+                USSDLog.d(TAG, "👋 Welcome Screen");
+                broadcastToApp("WELCOME_SCREEN", ussdText, currentSessionId);
+                break;
+
+            default:
+                USSDLog.d(TAG, "📝 General Response");
+                broadcastToApp("USSD_RESPONSE", ussdText, currentSessionId);
+                break;
+        }
 
-            for (String text : buttonTexts) {
-                List<AccessibilityNodeInfo> buttons = root.findAccessibilityNodeInfosByText(text);
-                for (AccessibilityNodeInfo button : buttons) {
-                    if (button.isClickable()) {
-                        button.performAction(AccessibilityNodeInfo.ACTION_CLICK);
-                        Log.d(TAG, "✅ Clicked button with text: " + text);
-                        return;
-                    }
-                }
-            }
+        // What to do next comes from the rule that matched, not the type
+        switch (response.getAction()) {
+            case AUTO_PIN:
+                autoFillPin(response, ussdText);
+                break;
+            case END_SESSION:
+                closeRecorder(response.getType() == USSDResponse.ResponseType.ERROR ? "error" : "success");
+                resetSession();
+                break;
+            default:
+                break;
+        }
+    }
 
-        } catch (Exception e) {
-            Log.e(TAG, "❌ Button click error: " + e.getMessage());
-        } finally {
-            root.recycle();
+    private void autoFillPin(USSDResponse response, String ussdText) {
+        boolean answeredEarly = response.getFingerprint() == earlyPinFingerprint;
+        earlyPinFingerprint = USSDScreenFingerprint.EMPTY;
+        if (answeredEarly) {
+            broadcastToApp("INPUT_SENT", "Auto-filled PIN", currentSessionId);
+        } else if (!mayAutoFillPin(ussdText)) {
+            USSDLog.w(TAG, "⚠️ PIN prompt repeated or rejected - leaving it to the user");
+        } else if (!isWaitingForInput && !actionPipeline.isRunning()) {
+            // As soon as the field is ready
+            startAutoPin();
+            broadcastToApp("INPUT_SENT", "Auto-filled PIN", currentSessionId);
         }
     }
 
-    private String extractUSSDText(AccessibilityNodeInfo node) {
-        if (node == null) return "";
+    private boolean mayAutoFillPin(String ussdText) {
+        return autoPinsSent < MAX_AUTO_PINS && !isRejectedPin(ussdText);
+    }
 
-        StringBuilder text = new StringBuilder();
+    private void startAutoPin() {
+        autoPinsSent++;
+        actionPipeline.start(DEFAULT_PIN, true);
+    }
 
-        if (node.getText() != null && !node.getText().toString().trim().isEmpty()) {
-            text.append(node.getText().toString().trim()).append("\n");
-        }
+    // A PIN prompt that also reads as an error ("Invalid PIN") means the last PIN was rejected
+    private boolean isRejectedPin(String ussdText) {
+        return activeClassifier.matchesType(activeClassifier.scan(ussdText), USSDResponse.ResponseType.ERROR);
+    }
 
-        if (node.getContentDescription() != null && !node.getContentDescription().toString().trim().isEmpty()) {
-            text.append(node.getContentDescription().toString().trim()).append("\n");
+    private void processPendingInput() {
+        if (pendingInput != null && isWaitingForInput && isUSSDInProgress) {
+            if (USSDLog.DEBUG) USSDLog.d(TAG, "🎯 Processing pending input (" + pendingInput.length() + " chars)");
+            actionPipeline.start(pendingInput);
         }
+    }
 
-        for (int i = 0; i < node.getChildCount(); i++) {
-            AccessibilityNodeInfo child = node.getChild(i);
-            if (child != null) {
-                text.append(extractUSSDText(child));
-                child.recycle();
-            }
-        }
+    private void closeRecorder(String reason) {
+        if (recorder == null) return;
+        recorder.endSession(reason, SystemClock.elapsedRealtime());
+        recorder.close();
+        if (USSDLog.DEBUG) USSDLog.d(TAG, "⏹️ Recording closed (" + reason + "): " + recorder.getStatsSummary());
+        recorder = null;
+    }
+
+    private void resetSession() {
+        closeRecorder("reset");
+        setSubscriptionActive(false);
+        handler.removeCallbacks(sessionIdleTimeout);
+        eventCoalescer.cancelAll();
+        actionPipeline.cancel();
 
-        return text.toString();
+        isUSSDInProgress = false;
+        hasDialedUSSD = false;
+        isWaitingForInput = false;
+        pendingInput = null;
+        autoPinsSent = 0;
+        recentScreens.clear();
+        screenModel.clear();
+        activeSnapshot = null;
+        dialogWindowId = -1;
+        releaseDialogWindow();
+        streamingClassifier.reset();
+        earlyPinFingerprint = USSDScreenFingerprint.EMPTY;
+        if (USSDLog.DEBUG) {
+            USSDLog.d(TAG, "📊 Coalescer stats: " + eventCoalescer.getStatsSummary());
+            USSDLog.d(TAG, "📊 Screen model stats: " + screenModel.getStatsSummary());
+            USSDLog.d(TAG, "📊 Event ring stats: " + eventRing.getStatsSummary());
+            USSDLog.d(TAG, "📊 Locator cache stats: " + locatorCache.getStatsSummary());
+            USSDLog.d(TAG, "📊 Extraction: profile=" + profileExtractions + ", generic=" + genericExtractions);
+            USSDLog.d(TAG, "📊 Dialog window: lookups=" + windowLookups + ", activeFallbacks=" + activeWindowFallbacks);
+            USSDLog.d(TAG, "📊 Early decisions: " + earlyDecisions);
+            USSDLog.d(TAG, "📊 Screen templates: " + screenTemplates.getStatsSummary());
+        }
+        currentDialogKey = null;
+        currentPackage = null;
+        profileExtractions = 0;
+        genericExtractions = 0;
+        windowLookups = 0;
+        activeWindowFallbacks = 0;
+        earlyDecisions = 0;
     }
 
     private void broadcastToApp(String type, String message, String sessionId) {
@@ -375,9 +774,9 @@ public class USSDAccessibilityService extends AccessibilityService {
             intent.putExtra("message", message);
             intent.putExtra("session_id", sessionId);
             LocalBroadcastManager.getInstance(this).sendBroadcast(intent);
-            Log.d(TAG, "📨 Broadcast: " + type);
+            if (USSDLog.DEBUG) USSDLog.d(TAG, "📨 Broadcast: " + type);
         } catch (Exception e) {
-            Log.e(TAG, "❌ Broadcast error: " + e.getMessage());
+            USSDLog.e(TAG, "❌ Broadcast error: " + e.getMessage());
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,284 @@
+package com.example.inbuiltussd;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+/**
+ * Sends one input to the USSD dialog as a sequence of steps, each executed as soon as
+ * its precondition is observed on the dialog instead of after a fixed delay:
+ * input field present, input field focused, text applied, confirm button enabled.
+ * Steps are re-checked on every screen change and on a short poll tick, and each one
+ * has its own timeout.
+ */
+public class USSDActionPipeline {
+
+    public interface Host {
+        // Current snapshot of the dialog, walking it again only if the cached one is stale
+        USSDNodeSnapshot captureDialog();
+        // Package and class of the dialog, used to key the locator cache
+        String getDialogKey();
+        // Single targeted lookup by cached locator; the caller owns the returned node
+        AccessibilityNodeInfo findNode(String locator, int requiredFlag);
+        // Sensitive if started as such or typed into a password field; never log the value then
+        void onInputSubmitted(String input, boolean sensitive);
+        void onInputFailed(String input, String reason);
+    }
+
+    private static final String TAG = "USSD_Pipeline";
+
+    static final String INPUT_FIELD_ID = "com.android.phone:id/input_field";
+    static final String[] BUTTON_IDS = {"android:id/button1", "com.android.phone:id/positiveButton"};
+    static final String[] BUTTON_TEXTS = {"ok", "send", "submit", "continue"};
+
+    private static final long POLL_INTERVAL_MS = 50;
+    private static final long INPUT_TIMEOUT_MS = 3000;
+    private static final long FOCUS_TIMEOUT_MS = 300;
+    private static final long TEXT_TIMEOUT_MS = 1000;
+    private static final long BUTTON_TIMEOUT_MS = 1500;
+
+    private enum Step {
+        IDLE, FIND_INPUT, FOCUS_INPUT, SET_TEXT, VERIFY_TEXT, PRESS_BUTTON
+    }
+
+    private final Handler handler;
+    private final Host host;
+    private final USSDLocatorCache locatorCache;
+    private final Runnable tick = this::advance;
+
+    private Step step = Step.IDLE;
+    private long stepDeadline;
+    private long startTime;
+    private String input;
+    private boolean sensitive;
+    private AccessibilityNodeInfo inputNode;
+    private AccessibilityNodeInfo buttonNode;
+    // Set once a cached locator misses, so the rest of this run polls the full search
+    private boolean skipCachedInput;
+    private boolean skipCachedButton;
+
+    public USSDActionPipeline(Handler handler, Host host, USSDLocatorCache locatorCache) {
+        this.handler = handler;
+        this.host = host;
+        this.locatorCache = locatorCache;
+    }
+
+    public void start(String input) {
+        start(input, false);
+    }
+
+    // Sensitive input (a PIN) is reported as such to the host when submitted
+    public void start(String input, boolean sensitive) {
+        if (isRunning()) {
+            // Never log the value: it may be the PIN
+            USSDLog.w(TAG, "⚠️ Replacing pending input");
+            finish();
+        }
+
+        this.input = input;
+        this.sensitive = sensitive;
+        skipCachedInput = false;
+        skipCachedButton = false;
+        startTime = SystemClock.uptimeMillis();
+        enter(Step.FIND_INPUT, INPUT_TIMEOUT_MS);
+        advance();
+    }
+
+    public boolean isRunning() {
+        return step != Step.IDLE;
+    }
+
+    // Called for every dialog event so a step runs the moment its precondition holds
+    public void onScreenChanged() {
+        if (isRunning()) {
+            advance();
+        }
+    }
+
+    public void cancel() {
+        if (isRunning()) {
+            finish();
+        }
+    }
+
+    private void advance() {
+        handler.removeCallbacks(tick);
+
+        try {
+            while (isRunning()) {
+                if (tryStep()) continue;
+
+                if (SystemClock.uptimeMillis() < stepDeadline) {
+                    handler.postDelayed(tick, POLL_INTERVAL_MS);
+                } else {
+                    onStepTimeout();
+                }
+                return;
+            }
+        } catch (Exception e) {
+            fail("Input error: " + e.getMessage());
+        }
+    }
+
+    private boolean tryStep() {
+        switch (step) {
+            case FIND_INPUT:
+                return findInput();
+            case FOCUS_INPUT:
+                if (!refresh(inputNode) || !inputNode.isFocused()) return false;
+                enter(Step.SET_TEXT, TEXT_TIMEOUT_MS);
+                return true;
+            case SET_TEXT:
+                Bundle args = new Bundle();
+                args.putCharSequence(AccessibilityNodeInfo.ACTION_ARGUMENT_SET_TEXT_CHARSEQUENCE, input);
+                if (!inputNode.performAction(AccessibilityNodeInfo.ACTION_SET_TEXT, args)) return false;
+                if (USSDLog.DEBUG) USSDLog.d(TAG, "✅ Input entered (" + input.length() + " chars)");
+                enter(Step.VERIFY_TEXT, TEXT_TIMEOUT_MS);
+                return true;
+            case VERIFY_TEXT:
+                if (!refresh(inputNode) || !isTextApplied()) return false;
+                enter(Step.PRESS_BUTTON, BUTTON_TIMEOUT_MS);
+                return true;
+            case PRESS_BUTTON:
+                return pressButton();
+            default:
+                return false;
+        }
+    }
+
+    private boolean findInput() {
+        String dialogKey = host.getDialogKey();
+
+        // Known-good locator for this dialog first: one lookup instead of a full walk
+        String cached = skipCachedInput ? null : locatorCache.get(USSDLocatorCache.ROLE_INPUT, dialogKey);
+        if (cached != null && !USSDLocatorCache.LOCATOR_EDITABLE.equals(cached)) {
+            AccessibilityNodeInfo node = host.findNode(cached, USSDNodeSnapshot.FLAG_EDITABLE);
+            if (node != null) {
+                locatorCache.countHit();
+                onInputFound(node, node.isFocused());
+                return true;
+            }
+            // Usually the field just isn't rendered yet, so keep the entry
+            locatorCache.countMiss();
+            skipCachedInput = true;
+        }
+
+        USSDNodeSnapshot snapshot = host.captureDialog();
+        if (snapshot == null) return false;
+
+        int inputIndex = snapshot.findInputField(INPUT_FIELD_ID);
+        if (inputIndex < 0) return false;
+
+        locatorCache.record(USSDLocatorCache.ROLE_INPUT, dialogKey,
+                USSDLocatorCache.locatorFor(snapshot, inputIndex, null));
+
+        // Own a copy; the snapshot's handles are recycled on the next capture
+        onInputFound(AccessibilityNodeInfo.obtain(snapshot.getNode(inputIndex)),
+                snapshot.hasFlag(inputIndex, USSDNodeSnapshot.FLAG_FOCUSED));
+        return true;
+    }
+
+    private void onInputFound(AccessibilityNodeInfo node, boolean focused) {
+        inputNode = node;
+        if (focused) {
+            enter(Step.SET_TEXT, TEXT_TIMEOUT_MS);
+        } else {
+            inputNode.performAction(AccessibilityNodeInfo.ACTION_FOCUS);
+            enter(Step.FOCUS_INPUT, FOCUS_TIMEOUT_MS);
+        }
+    }
+
+    private boolean isTextApplied() {
+        CharSequence text = inputNode.getText();
+        if (text == null) return false;
+
+        // Password fields report masked text, so only the length can be checked
+        if (inputNode.isPassword()) return text.length() == input.length();
+        return input.contentEquals(text);
+    }
+
+    private boolean pressButton() {
+        if (buttonNode == null) {
+            buttonNode = findButton();
+            if (buttonNode == null) return false;
+        }
+
+        if (!refresh(buttonNode) || !buttonNode.isEnabled()) return false;
+        if (!buttonNode.performAction(AccessibilityNodeInfo.ACTION_CLICK)) return false;
+
+        if (USSDLog.DEBUG) USSDLog.d(TAG, "✅ Clicked button: " + buttonNode.getViewIdResourceName() +
+                " after " + (SystemClock.uptimeMillis() - startTime) + "ms");
+        String submitted = input;
+        boolean submittedSensitive = sensitive || inputNode.isPassword();
+        finish();
+        host.onInputSubmitted(submitted, submittedSensitive);
+        return true;
+    }
+
+    private AccessibilityNodeInfo findButton() {
+        String dialogKey = host.getDialogKey();
+
+        String cached = skipCachedButton ? null : locatorCache.get(USSDLocatorCache.ROLE_BUTTON, dialogKey);
+        if (cached != null) {
+            AccessibilityNodeInfo node = host.findNode(cached, USSDNodeSnapshot.FLAG_CLICKABLE);
+            if (node != null) {
+                locatorCache.countHit();
+                return node;
+            }
+            locatorCache.countMiss();
+            skipCachedButton = true;
+        }
+
+        USSDNodeSnapshot snapshot = host.captureDialog();
+        if (snapshot == null) return null;
+
+        int buttonIndex = snapshot.findClickable(BUTTON_IDS, BUTTON_TEXTS);
+        if (buttonIndex < 0) return null;
+
+        locatorCache.record(USSDLocatorCache.ROLE_BUTTON, dialogKey,
+                USSDLocatorCache.locatorFor(snapshot, buttonIndex, BUTTON_TEXTS));
+        return AccessibilityNodeInfo.obtain(snapshot.getNode(buttonIndex));
+    }
+
+    private void onStepTimeout() {
+        if (step == Step.FOCUS_INPUT) {
+            // Some dialogs never report focus on their field; setting text works regardless
+            enter(Step.SET_TEXT, TEXT_TIMEOUT_MS);
+            advance();
+            return;
+        }
+        fail("Timed out at " + step);
+    }
+
+    private void fail(String reason) {
+        USSDLog.w(TAG, "⚠️ " + reason);
+        String failed = input;
+        finish();
+        host.onInputFailed(failed, reason);
+    }
+
+    private void enter(Step next, long timeoutMs) {
+        step = next;
+        stepDeadline = SystemClock.uptimeMillis() + timeoutMs;
+    }
+
+    private void finish() {
+        handler.removeCallbacks(tick);
+        step = Step.IDLE;
+        input = null;
+        sensitive = false;
+        if (inputNode != null) {
+            inputNode.recycle();
+            inputNode = null;
+        }
+        if (buttonNode != null) {
+            buttonNode.recycle();
+            buttonNode = null;
+        }
+    }
+
+    private static boolean refresh(AccessibilityNodeInfo node) {
+        return node != null && node.refresh();
+    }
+}
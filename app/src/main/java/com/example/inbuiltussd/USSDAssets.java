@@ -0,0 +1,36 @@
+package com.example.inbuiltussd;
+
+import android.content.Context;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the JSON data files (bundled assets, operator updates) for the rule pack and
+ * menu graph loaders.
+ */
+final class USSDAssets {
+
+    private USSDAssets() {
+    }
+
+    /**
+     * Whole asset as UTF-8 text; FileNotFoundException if it isn't bundled.
+     */
+    static String readText(Context context, String name) throws IOException {
+        try (InputStream in = context.getAssets().open(name)) {
+            return readText(in);
+        }
+    }
+
+    static String readText(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toString("UTF-8");
+    }
+}
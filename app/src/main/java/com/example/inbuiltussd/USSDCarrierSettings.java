@@ -0,0 +1,53 @@
+package com.example.inbuiltussd;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+/**
+ * Debug setting for the carrier the in-app simulators run behind, persisted in
+ * SharedPreferences. Set it by launching the app with extras, e.g.
+ * {@code adb shell am start -n com.example.inbuiltussd/.MainActivity
+ * --es carrier_profile flaky --el carrier_seed 42}; "ideal" switches it off again.
+ */
+public final class USSDCarrierSettings {
+
+    public static final String PREFS_NAME = "ussd_carrier";
+    public static final String EXTRA_PROFILE = "carrier_profile";
+    public static final String EXTRA_SEED = "carrier_seed";
+
+    private static final String TAG = "USSDCarrierSettings";
+
+    private USSDCarrierSettings() {}
+
+    // Stores the profile named in the launch intent, if any
+    public static void applyExtras(Context context, Intent intent) {
+        String name = intent != null ? intent.getStringExtra(EXTRA_PROFILE) : null;
+        if (name == null) return;
+
+        if (USSDCarrierProfile.forName(name) == null) {
+            Log.w(TAG, "⚠️ Unknown carrier profile: " + name);
+            return;
+        }
+        prefs(context).edit()
+                .putString(EXTRA_PROFILE, name)
+                .putLong(EXTRA_SEED, intent.getLongExtra(EXTRA_SEED, 0))
+                .apply();
+        Log.d(TAG, "📶 Carrier profile set: " + name);
+    }
+
+    /**
+     * Carrier for a new simulator; instant and fault-free unless a profile was set.
+     */
+    public static USSDCarrier load(Context context) {
+        SharedPreferences prefs = prefs(context);
+        USSDCarrierProfile profile = USSDCarrierProfile.forName(prefs.getString(EXTRA_PROFILE, ""));
+        if (profile == null) profile = USSDCarrierProfile.IDEAL;
+        return new USSDCarrier(profile, prefs.getLong(EXTRA_SEED, 0));
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.inbuiltussd;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.SparseArray;
+
+/**
+ * Collapses bursts of accessibility events into a single processing pass per window.
+ * Every event re-arms the window's quiet period, so the pass only runs once the dialog
+ * has stopped changing (or the max delay is reached for windows that never settle).
+ * Not thread-safe: call it from the thread that owns the handler.
+ */
+public class USSDEventCoalescer {
+
+    public interface Callback {
+        void onWindowSettled(int windowId, int eventCount);
+    }
+
+    public static final long DEFAULT_QUIET_PERIOD_MS = 250;
+    public static final long DEFAULT_MAX_DELAY_MS = 1000;
+
+    private final Handler handler;
+    private final Callback callback;
+    private final SparseArray<PendingPass> pendingPasses = new SparseArray<>();
+
+    private long quietPeriodMs = DEFAULT_QUIET_PERIOD_MS;
+    private final long maxDelayMs = DEFAULT_MAX_DELAY_MS;
+
+    // Counters
+    private int eventsReceived = 0;
+    private int eventsMerged = 0;
+    private int passesRun = 0;
+
+    public USSDEventCoalescer(Handler handler, Callback callback) {
+        this.handler = handler;
+        this.callback = callback;
+    }
+
+    public void schedule(int windowId) {
+        eventsReceived++;
+        long now = SystemClock.uptimeMillis();
+
+        PendingPass pass = pendingPasses.get(windowId);
+        if (pass == null) {
+            pass = new PendingPass(windowId);
+            pendingPasses.put(windowId, pass);
+        }
+
+        if (pass.scheduled) {
+            // Replace the pending pass instead of queueing another one
+            handler.removeCallbacks(pass);
+            eventsMerged++;
+        } else {
+            pass.scheduled = true;
+            pass.firstEventTime = now;
+            pass.eventCount = 0;
+        }
+        pass.eventCount++;
+
+        // Never push a pass beyond the max delay, even if the window keeps changing
+        long deadline = pass.firstEventTime + maxDelayMs;
+        long runAt = Math.min(now + quietPeriodMs, deadline);
+        handler.postDelayed(pass, Math.max(0, runAt - now));
+    }
+
+    public void cancelAll() {
+        for (int i = 0; i < pendingPasses.size(); i++) {
+            handler.removeCallbacks(pendingPasses.valueAt(i));
+        }
+        pendingPasses.clear();
+    }
+
+    public void setQuietPeriodMs(long quietPeriodMs) {
+        this.quietPeriodMs = Math.max(0, quietPeriodMs);
+    }
+
+    public int getEventsReceived() { return eventsReceived; }
+    public int getEventsMerged() { return eventsMerged; }
+    public int getPassesRun() { return passesRun; }
+
+    public void resetStats() {
+        eventsReceived = 0;
+        eventsMerged = 0;
+        passesRun = 0;
+    }
+
+    public String getStatsSummary() {
+        return "events=" + eventsReceived + ", merged=" + eventsMerged + ", passes=" + passesRun;
+    }
+
+    private class PendingPass implements Runnable {
+        private final int windowId;
+        private boolean scheduled;
+        private long firstEventTime;
+        private int eventCount;
+
+        PendingPass(int windowId) {
+            this.windowId = windowId;
+        }
+
+        @Override
+        public void run() {
+            int count = eventCount;
+            scheduled = false;
+            eventCount = 0;
+            passesRun++;
+            callback.onWindowSettled(windowId, count);
+        }
+    }
+}
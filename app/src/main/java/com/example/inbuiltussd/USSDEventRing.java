@@ -0,0 +1,181 @@
+package com.example.inbuiltussd;
+
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import java.util.List;
+
+/**
+ * Bounded ring of preallocated event records handing accessibility events from the
+ * service's main thread to the processing thread. The producer copies a handful of
+ * fields out of the event (which is recycled as soon as onAccessibilityEvent returns);
+ * no records are allocated after construction. Events the screen model may patch also
+ * carry a pooled copy, from which the consumer fetches the changed node on its own thread.
+ */
+public class USSDEventRing {
+
+    public enum OverflowPolicy {
+        DROP_OLDEST, DROP_NEWEST
+    }
+
+    public static final int DEFAULT_CAPACITY = 64;
+    // Event text entries kept per record; dialogs put their message in the first few
+    public static final int MAX_TEXTS = 4;
+
+    public static class Record {
+        public CharSequence packageName;
+        public CharSequence className;
+        public int windowId;
+        public int eventType;
+        public int contentChangeTypes;
+        public long eventTime;
+        // References to the event's text entries, for streaming classification
+        public final CharSequence[] texts = new CharSequence[MAX_TEXTS];
+        public int textCount;
+        // Only set for events the screen model may patch; owned by whoever holds the record
+        public AccessibilityEvent event;
+        // Set by the consumer from event
+        public AccessibilityNodeInfo source;
+
+        void copyFrom(Record other) {
+            packageName = other.packageName;
+            className = other.className;
+            windowId = other.windowId;
+            eventType = other.eventType;
+            contentChangeTypes = other.contentChangeTypes;
+            eventTime = other.eventTime;
+            event = other.event;
+            source = other.source;
+            textCount = other.textCount;
+            System.arraycopy(other.texts, 0, texts, 0, textCount);
+        }
+
+        void clear() {
+            packageName = null;
+            className = null;
+            event = null;
+            source = null;
+            for (int i = 0; i < textCount; i++) {
+                texts[i] = null;
+            }
+            textCount = 0;
+        }
+    }
+
+    private final Record[] records;
+    private final OverflowPolicy overflowPolicy;
+    private int head = 0;
+    private int size = 0;
+    private boolean overflowed = false;
+
+    // Metrics
+    private long offered = 0;
+    private long dropped = 0;
+    private int highWaterMark = 0;
+
+    public USSDEventRing() {
+        this(DEFAULT_CAPACITY, OverflowPolicy.DROP_OLDEST);
+    }
+
+    public USSDEventRing(int capacity, OverflowPolicy overflowPolicy) {
+        this.records = new Record[Math.max(1, capacity)];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = new Record();
+        }
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Producer side. Returns false if the event was dropped; either way the ring takes
+     * ownership of event.
+     */
+    public synchronized boolean offer(CharSequence packageName, CharSequence className, int windowId,
+                                      int eventType, int contentChangeTypes, long eventTime,
+                                      List<CharSequence> texts, AccessibilityEvent event) {
+        offered++;
+
+        if (size == records.length) {
+            dropped++;
+            overflowed = true;
+            if (overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+                if (event != null) event.recycle();
+                return false;
+            }
+
+            // Overwrite the oldest record
+            Record oldest = records[head];
+            if (oldest.event != null) oldest.event.recycle();
+            oldest.clear();
+            head = (head + 1) % records.length;
+            size--;
+        }
+
+        Record record = records[(head + size) % records.length];
+        record.packageName = packageName;
+        record.className = className;
+        record.windowId = windowId;
+        record.eventType = eventType;
+        record.contentChangeTypes = contentChangeTypes;
+        record.eventTime = eventTime;
+        record.event = event;
+        // Copies references only; the list itself is cleared when the event is recycled
+        int textCount = texts != null ? Math.min(texts.size(), MAX_TEXTS) : 0;
+        for (int i = 0; i < textCount; i++) {
+            record.texts[i] = texts.get(i);
+        }
+        record.textCount = textCount;
+        size++;
+
+        if (size > highWaterMark) highWaterMark = size;
+        return true;
+    }
+
+    /**
+     * Consumer side. Copies the oldest record into out and frees its slot.
+     */
+    public synchronized boolean poll(Record out) {
+        if (size == 0) return false;
+
+        Record record = records[head];
+        out.copyFrom(record);
+        record.clear();
+        head = (head + 1) % records.length;
+        size--;
+        return true;
+    }
+
+    /**
+     * True once after events were dropped, so the consumer can discard incremental
+     * state that depended on the lost events.
+     */
+    public synchronized boolean consumeOverflow() {
+        boolean result = overflowed;
+        overflowed = false;
+        return result;
+    }
+
+    public synchronized void clear() {
+        while (size > 0) {
+            Record record = records[head];
+            if (record.event != null) record.event.recycle();
+            record.clear();
+            head = (head + 1) % records.length;
+            size--;
+        }
+    }
+
+    public synchronized long getOffered() { return offered; }
+    public synchronized long getDropped() { return dropped; }
+    public synchronized int getHighWaterMark() { return highWaterMark; }
+
+    public synchronized void resetStats() {
+        offered = 0;
+        dropped = 0;
+        highWaterMark = size;
+    }
+
+    public synchronized String getStatsSummary() {
+        return "offered=" + offered + ", dropped=" + dropped + ", highWater=" + highWaterMark +
+                "/" + records.length + " (" + overflowPolicy + ")";
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.inbuiltussd;
+
+/**
+ * Where each supported dialer package puts the USSD message body. With a profile the
+ * service reads just the message view (directly by id, or from the cached snapshot)
+ * instead of concatenating every text in the window, which also keeps button labels
+ * and input hints out of classification. Packages match those subscribed to in setupService.
+ */
+public class USSDExtractionProfile {
+
+    private static final USSDExtractionProfile[] PROFILES = {
+            // AOSP Telephony: dialog_ussd_response uses @id/msg, plain MMI results use an AlertDialog
+            new USSDExtractionProfile("com.android.phone",
+                    "com.android.phone:id/msg", "android:id/message"),
+            new USSDExtractionProfile("com.google.android.dialer",
+                    "android:id/message"),
+            new USSDExtractionProfile("com.samsung.android.dialer",
+                    "android:id/message", "com.samsung.android.dialer:id/message"),
+            new USSDExtractionProfile("com.android.incallui",
+                    "android:id/message")
+    };
+
+    private final String packageName;
+    private final String[] messageViewIds;
+
+    private USSDExtractionProfile(String packageName, String... messageViewIds) {
+        this.packageName = packageName;
+        this.messageViewIds = messageViewIds;
+    }
+
+    public static USSDExtractionProfile forPackage(CharSequence packageName) {
+        if (packageName == null) return null;
+        for (USSDExtractionProfile profile : PROFILES) {
+            if (profile.packageName.contentEquals(packageName)) return profile;
+        }
+        return null;
+    }
+
+    public String getPackageName() { return packageName; }
+    public String[] getMessageViewIds() { return messageViewIds; }
+
+    /**
+     * Message text from an already captured snapshot, or null if none of the
+     * profile's views is present (the caller then falls back to the generic walk).
+     */
+    public CharSequence extract(USSDNodeSnapshot snapshot) {
+        for (String viewId : messageViewIds) {
+            int index = snapshot.findByViewId(viewId);
+            if (index < 0) continue;
+
+            CharSequence text = trimmedOrNull(snapshot.getText(index));
+            if (text != null) return text;
+        }
+        return null;
+    }
+
+    // Trimmed view of value; no copy unless there is whitespace to cut
+    static CharSequence trimmedOrNull(CharSequence value) {
+        if (value == null) return null;
+
+        int start = 0;
+        int end = value.length();
+        while (start < end && value.charAt(start) <= ' ') start++;
+        while (end > start && value.charAt(end - 1) <= ' ') end--;
+        if (start == end) return null;
+        return start == 0 && end == value.length() ? value : value.subSequence(start, end);
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.inbuiltussd;
+
+import android.content.SharedPreferences;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers, per dialer dialog (package + dialog class), which locator found the input
+ * field and the confirm button last time, so the next session can try it first with a
+ * single targeted lookup instead of a full scan. Persisted in SharedPreferences.
+ *
+ * Locators are plain strings: {@code id:<view id>}, {@code text:<label>} or {@code editable}.
+ */
+public class USSDLocatorCache {
+
+    public static final String PREFS_NAME = "ussd_locators";
+
+    public static final String ROLE_INPUT = "input";
+    public static final String ROLE_BUTTON = "button";
+
+    public static final String PREFIX_ID = "id:";
+    public static final String PREFIX_TEXT = "text:";
+    public static final String LOCATOR_EDITABLE = "editable";
+
+    private final SharedPreferences prefs;
+    private final Map<String, String> locators = new HashMap<>();
+
+    // Counters
+    private int hits = 0;
+    private int misses = 0;
+
+    public USSDLocatorCache(SharedPreferences prefs) {
+        this.prefs = prefs;
+        for (Map.Entry<String, ?> entry : prefs.getAll().entrySet()) {
+            if (entry.getValue() instanceof String) {
+                locators.put(entry.getKey(), (String) entry.getValue());
+            }
+        }
+    }
+
+    public String get(String role, String dialogKey) {
+        return locators.get(key(role, dialogKey));
+    }
+
+    // Only writes through when a full search found a different locator than the cached one
+    public void record(String role, String dialogKey, String locator) {
+        String key = key(role, dialogKey);
+        if (locator == null || locator.equals(locators.get(key))) return;
+
+        locators.put(key, locator);
+        prefs.edit().putString(key, locator).apply();
+    }
+
+    public void countHit() { hits++; }
+    public void countMiss() { misses++; }
+
+    public String getStatsSummary() {
+        return "entries=" + locators.size() + ", hits=" + hits + ", misses=" + misses;
+    }
+
+    // Locator describing a node found by scanning a snapshot
+    public static String locatorFor(USSDNodeSnapshot snapshot, int index, String[] labels) {
+        String viewId = snapshot.getViewId(index);
+        if (viewId != null && !viewId.isEmpty()) return PREFIX_ID + viewId;
+
+        if (labels == null) return LOCATOR_EDITABLE;
+        for (String label : labels) {
+            if (USSDStrings.containsIgnoreCase(snapshot.getText(index), label)
+                    || USSDStrings.containsIgnoreCase(snapshot.getContentDescription(index), label)) {
+                return PREFIX_TEXT + label;
+            }
+        }
+        return null;
+    }
+
+    private static String key(String role, String dialogKey) {
+        return role + "|" + (dialogKey != null ? dialogKey : "");
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.inbuiltussd;
+
+import android.util.Log;
+
+/**
+ * Logging facade for the accessibility hot path. Debug output is off in release builds;
+ * call sites that build their message guard it with {@code if (USSDLog.DEBUG)} so no
+ * string concatenation happens either, and R8 strips {@link #d} entirely (see proguard-rules.pro).
+ * Warnings and errors are always logged.
+ */
+public final class USSDLog {
+
+    public static final boolean DEBUG = BuildConfig.DEBUG;
+
+    private USSDLog() {
+    }
+
+    public static void d(String tag, String message) {
+        if (DEBUG) Log.d(tag, message);
+    }
+
+    public static void w(String tag, String message) {
+        Log.w(tag, message);
+    }
+
+    public static void e(String tag, String message) {
+        Log.e(tag, message);
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.inbuiltussd;
+
+import android.content.Context;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+/**
+ * Reads operator menu graphs from an optional {@code ussd_menus.json} asset, on top of
+ * the built-in LOOP journeys (format in {@link USSDMenuGraphs}). A missing or broken
+ * file leaves just the built-ins.
+ */
+public final class USSDMenuGraphLoader {
+
+    public static final String ASSET_NAME = "ussd_menus.json";
+
+    private static final String TAG = "USSD_MenuGraphs";
+
+    private static volatile USSDMenuGraphs cached;
+
+    private USSDMenuGraphLoader() {
+    }
+
+    /**
+     * Graphs from the asset, parsed once per process.
+     */
+    public static USSDMenuGraphs get(Context context) {
+        USSDMenuGraphs graphs = cached;
+        if (graphs == null) {
+            graphs = load(context);
+            cached = graphs;
+        }
+        return graphs;
+    }
+
+    public static USSDMenuGraphs load(Context context) {
+        try {
+            USSDMenuGraphs graphs = USSDMenuGraphs.parse(USSDAssets.readText(context, ASSET_NAME));
+            if (USSDLog.DEBUG) USSDLog.d(TAG, "📦 Loaded " + graphs.getGraphs().size() + " menu graphs");
+            return graphs;
+        } catch (FileNotFoundException e) {
+            return USSDMenuGraphs.builtIn();
+        } catch (IOException | IllegalArgumentException e) {
+            USSDLog.w(TAG, "⚠️ Using built-in menus: " + e.getMessage());
+            return USSDMenuGraphs.builtIn();
+        }
+    }
+}
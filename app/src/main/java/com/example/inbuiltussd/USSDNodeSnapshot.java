@@ -0,0 +1,232 @@
+package com.example.inbuiltussd;
+
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import java.util.Arrays;
+
+/**
+ * Flat, array-backed copy of a dialog's node tree, captured once per processing pass.
+ * Text extraction, input lookup and button lookup all query these arrays; the live
+ * node handles are kept only so the final performAction can be issued on them.
+ * Nodes are stored in pre-order, so index 0 is always the root.
+ */
+public class USSDNodeSnapshot {
+
+    public static final int FLAG_EDITABLE = 1;
+    public static final int FLAG_CLICKABLE = 1 << 1;
+    public static final int FLAG_ENABLED = 1 << 2;
+    public static final int FLAG_FOCUSED = 1 << 3;
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int MAX_NODES = 1024;
+
+    private AccessibilityNodeInfo[] nodes = new AccessibilityNodeInfo[INITIAL_CAPACITY];
+    private CharSequence[] texts = new CharSequence[INITIAL_CAPACITY];
+    private CharSequence[] descriptions = new CharSequence[INITIAL_CAPACITY];
+    private String[] viewIds = new String[INITIAL_CAPACITY];
+    private int[] flags = new int[INITIAL_CAPACITY];
+    private int[] parents = new int[INITIAL_CAPACITY];
+    private int[] childCounts = new int[INITIAL_CAPACITY];
+    private int size = 0;
+    private int windowId = -1;
+
+    // Traversal stack, reused between captures
+    private AccessibilityNodeInfo[] stackNodes = new AccessibilityNodeInfo[INITIAL_CAPACITY];
+    private int[] stackParents = new int[INITIAL_CAPACITY];
+
+    private final StringBuilder textBuffer = new StringBuilder(256);
+
+    /**
+     * Walks the tree under root once and records every node. The snapshot takes
+     * ownership of root and all children; they are recycled on the next capture or release.
+     */
+    public int capture(AccessibilityNodeInfo root) {
+        release();
+        if (root == null) return 0;
+        windowId = root.getWindowId();
+
+        int stackSize = 0;
+        stackNodes[stackSize] = root;
+        stackParents[stackSize] = -1;
+        stackSize++;
+
+        while (stackSize > 0) {
+            stackSize--;
+            AccessibilityNodeInfo node = stackNodes[stackSize];
+            int parent = stackParents[stackSize];
+            stackNodes[stackSize] = null;
+
+            if (size == MAX_NODES) {
+                node.recycle();
+                continue;
+            }
+
+            int index = add(node, parent);
+
+            // Push children in reverse so they pop in document order
+            int childCount = node.getChildCount();
+            for (int i = childCount - 1; i >= 0; i--) {
+                AccessibilityNodeInfo child = node.getChild(i);
+                if (child == null) continue;
+
+                if (stackSize == stackNodes.length) growStack();
+                stackNodes[stackSize] = child;
+                stackParents[stackSize] = index;
+                stackSize++;
+                childCounts[index]++;
+            }
+        }
+        return size;
+    }
+
+    public void release() {
+        for (int i = 0; i < size; i++) {
+            if (nodes[i] != null) {
+                nodes[i].recycle();
+                nodes[i] = null;
+            }
+            texts[i] = null;
+            descriptions[i] = null;
+            viewIds[i] = null;
+        }
+        size = 0;
+    }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+    public int getWindowId() { return windowId; }
+
+    public AccessibilityNodeInfo getNode(int index) { return nodes[index]; }
+    public CharSequence getText(int index) { return texts[index]; }
+    public CharSequence getContentDescription(int index) { return descriptions[index]; }
+    public String getViewId(int index) { return viewIds[index]; }
+    public int getParent(int index) { return parents[index]; }
+    public int getChildCount(int index) { return childCounts[index]; }
+    public boolean hasFlag(int index, int flag) { return (flags[index] & flag) != 0; }
+
+    /**
+     * Text and content descriptions of every node, trimmed and newline separated,
+     * in the same order the old recursive walk produced them. Returns the snapshot's
+     * reused buffer, valid until the next call.
+     */
+    public CharSequence extractText() {
+        textBuffer.setLength(0);
+        for (int i = 0; i < size; i++) {
+            appendTrimmedLine(textBuffer, texts[i]);
+            appendTrimmedLine(textBuffer, descriptions[i]);
+        }
+        return textBuffer;
+    }
+
+    public int findByViewId(String viewId) {
+        for (int i = 0; i < size; i++) {
+            if (viewId.equals(viewIds[i])) return i;
+        }
+        return -1;
+    }
+
+    public int findInputField(String preferredViewId) {
+        int firstEditable = -1;
+        for (int i = 0; i < size; i++) {
+            if ((flags[i] & FLAG_EDITABLE) == 0) continue;
+            if (preferredViewId != null && preferredViewId.equals(viewIds[i])) return i;
+            if (firstEditable < 0) firstEditable = i;
+        }
+        return firstEditable;
+    }
+
+    /**
+     * First clickable node matching one of the view ids, or failing that one whose text
+     * or description contains one of the labels (case-insensitive, like findAccessibilityNodeInfosByText).
+     */
+    public int findClickable(String[] viewIds, String[] labels) {
+        for (String viewId : viewIds) {
+            for (int i = 0; i < size; i++) {
+                if ((flags[i] & FLAG_CLICKABLE) != 0 && viewId.equals(this.viewIds[i])) return i;
+            }
+        }
+        for (String label : labels) {
+            for (int i = 0; i < size; i++) {
+                if ((flags[i] & FLAG_CLICKABLE) == 0) continue;
+                if (USSDStrings.containsIgnoreCase(texts[i], label)
+                        || USSDStrings.containsIgnoreCase(descriptions[i], label)) return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Index of the captured node the given handle refers to, or -1. Node equality only
+     * compares the node and window ids held locally, so this costs no IPC.
+     */
+    public int indexOf(AccessibilityNodeInfo node) {
+        for (int i = 0; i < size; i++) {
+            if (node.equals(nodes[i])) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Swaps in a fresher handle for an already captured node (e.g. an event source)
+     * and re-reads its fields. Structure is left untouched; the snapshot takes ownership.
+     */
+    public void replaceNode(int index, AccessibilityNodeInfo node) {
+        if (nodes[index] != null && nodes[index] != node) {
+            nodes[index].recycle();
+        }
+        read(index, node);
+    }
+
+    private int add(AccessibilityNodeInfo node, int parent) {
+        if (size == nodes.length) grow();
+
+        int index = size++;
+        parents[index] = parent;
+        childCounts[index] = 0;
+        read(index, node);
+        return index;
+    }
+
+    private void read(int index, AccessibilityNodeInfo node) {
+        nodes[index] = node;
+        texts[index] = node.getText();
+        descriptions[index] = node.getContentDescription();
+        viewIds[index] = node.getViewIdResourceName();
+
+        int nodeFlags = 0;
+        if (node.isEditable()) nodeFlags |= FLAG_EDITABLE;
+        if (node.isClickable()) nodeFlags |= FLAG_CLICKABLE;
+        if (node.isEnabled()) nodeFlags |= FLAG_ENABLED;
+        if (node.isFocused()) nodeFlags |= FLAG_FOCUSED;
+        flags[index] = nodeFlags;
+    }
+
+    private void grow() {
+        int capacity = nodes.length * 2;
+        nodes = Arrays.copyOf(nodes, capacity);
+        texts = Arrays.copyOf(texts, capacity);
+        descriptions = Arrays.copyOf(descriptions, capacity);
+        viewIds = Arrays.copyOf(viewIds, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        childCounts = Arrays.copyOf(childCounts, capacity);
+    }
+
+    private void growStack() {
+        int capacity = stackNodes.length * 2;
+        stackNodes = Arrays.copyOf(stackNodes, capacity);
+        stackParents = Arrays.copyOf(stackParents, capacity);
+    }
+
+    private static void appendTrimmedLine(StringBuilder out, CharSequence value) {
+        if (value == null) return;
+
+        int start = 0;
+        int end = value.length();
+        while (start < end && value.charAt(start) <= ' ') start++;
+        while (end > start && value.charAt(end - 1) <= ' ') end--;
+        if (start == end) return;
+
+        out.append(value, start, end).append('\n');
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.inbuiltussd;
+
+/**
+ * Small per-session LRU of screen fingerprints used to reject repeats in O(1).
+ * The first screen after an input has been sent is always accepted and starts the
+ * history over, so a screen the carrier legitimately sends again (a second "Invalid
+ * PIN", the main menu after "0. Back") is processed. The owner clears the history
+ * when a new dialog window appears.
+ */
+public class USSDRecentScreens {
+
+    public static final int DEFAULT_CAPACITY = 8;
+
+    private final long[] fingerprints;
+    private int size = 0;
+    private boolean resetOnNextScreen = false;
+
+    // Counters
+    private int accepted = 0;
+    private int rejected = 0;
+
+    public USSDRecentScreens() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public USSDRecentScreens(int capacity) {
+        this.fingerprints = new long[Math.max(1, capacity)];
+    }
+
+    /**
+     * Records the fingerprint and returns true if it was not seen recently.
+     */
+    public boolean offer(long fingerprint) {
+        if (resetOnNextScreen) {
+            resetOnNextScreen = false;
+            size = 0;
+        }
+
+        int index = indexOf(fingerprint);
+        if (index >= 0) {
+            if (index > 0) moveToFront(index);
+            rejected++;
+            return false;
+        }
+
+        insertAtFront(fingerprint);
+        accepted++;
+        return true;
+    }
+
+    public void onInputSent() {
+        resetOnNextScreen = true;
+    }
+
+    public void clear() {
+        size = 0;
+        resetOnNextScreen = false;
+    }
+
+    public int getAccepted() { return accepted; }
+    public int getRejected() { return rejected; }
+
+    public void resetStats() {
+        accepted = 0;
+        rejected = 0;
+    }
+
+    private int indexOf(long fingerprint) {
+        for (int i = 0; i < size; i++) {
+            if (fingerprints[i] == fingerprint) return i;
+        }
+        return -1;
+    }
+
+    private void moveToFront(int index) {
+        long fingerprint = fingerprints[index];
+        System.arraycopy(fingerprints, 0, fingerprints, 1, index);
+        fingerprints[0] = fingerprint;
+    }
+
+    private void insertAtFront(long fingerprint) {
+        int count = Math.min(size, fingerprints.length - 1);
+        System.arraycopy(fingerprints, 0, fingerprints, 1, count);
+        fingerprints[0] = fingerprint;
+        size = count + 1;
+    }
+}
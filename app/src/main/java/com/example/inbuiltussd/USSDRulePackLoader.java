@@ -0,0 +1,44 @@
+package com.example.inbuiltussd;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Picks the rule packs for the service: an operator update dropped into the app's files
+ * directory as {@code ussd_rule_packs.json} if there is one, otherwise the bundled packs.
+ * A broken update falls back to the bundled packs rather than failing the session.
+ */
+public final class USSDRulePackLoader {
+
+    private static final String TAG = "USSD_RulePacks";
+
+    private USSDRulePackLoader() {
+    }
+
+    public static USSDRulePacks load(Context context) {
+        File update = new File(context.getFilesDir(), USSDRulePacks.RESOURCE_NAME);
+        if (!update.exists()) return USSDRulePacks.builtIn();
+
+        try (InputStream in = new FileInputStream(update)) {
+            return fromJson(USSDAssets.readText(in));
+        } catch (IOException e) {
+            USSDLog.w(TAG, "⚠️ Using built-in rules: " + e.getMessage());
+            return USSDRulePacks.builtIn();
+        }
+    }
+
+    static USSDRulePacks fromJson(String json) {
+        try {
+            USSDRulePacks packs = USSDRulePacks.parse(json);
+            if (USSDLog.DEBUG) USSDLog.d(TAG, "📦 Loaded " + packs.getPacks().size() + " rule packs");
+            return packs;
+        } catch (IllegalArgumentException e) {
+            USSDLog.w(TAG, "⚠️ Using built-in rules: " + e.getMessage());
+            return USSDRulePacks.builtIn();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.inbuiltussd;
+
+import android.util.SparseArray;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+/**
+ * Cached node snapshots per window id. Text and content-description changes are
+ * patched into the cached snapshot from the event source node; anything that may
+ * change the structure (window state, subtree or undefined changes) marks the window
+ * stale so the next pass falls back to a full walk.
+ */
+public class USSDScreenModel {
+
+    private static final int PATCHABLE_CHANGES = AccessibilityEvent.CONTENT_CHANGE_TYPE_TEXT |
+            AccessibilityEvent.CONTENT_CHANGE_TYPE_CONTENT_DESCRIPTION;
+
+    private final SparseArray<USSDNodeSnapshot> screens = new SparseArray<>();
+    private boolean incrementalEnabled = true;
+
+    // Counters
+    private int fullWalks = 0;
+    private int incrementalUpdates = 0;
+
+    /**
+     * Returns the cached snapshot for the window, or null if it needs a full walk.
+     */
+    public USSDNodeSnapshot get(int windowId) {
+        USSDNodeSnapshot snapshot = screens.get(windowId);
+        return snapshot != null && !snapshot.isEmpty() ? snapshot : null;
+    }
+
+    /**
+     * Full walk from root; the result is cached under root's own window id.
+     */
+    public USSDNodeSnapshot capture(AccessibilityNodeInfo root) {
+        int windowId = root.getWindowId();
+        USSDNodeSnapshot snapshot = screens.get(windowId);
+        if (snapshot == null) {
+            snapshot = new USSDNodeSnapshot();
+            screens.put(windowId, snapshot);
+        }
+        snapshot.capture(root);
+        fullWalks++;
+        return snapshot;
+    }
+
+    /**
+     * True if a content change of these types can be patched in from the event
+     * source, so the caller only needs to fetch the source node in that case.
+     */
+    public boolean canPatch(int windowId, int contentChangeTypes) {
+        return incrementalEnabled && isPatchableChange(contentChangeTypes) && get(windowId) != null;
+    }
+
+    public static boolean isPatchableChange(int contentChangeTypes) {
+        return contentChangeTypes != 0 && (contentChangeTypes & ~PATCHABLE_CHANGES) == 0;
+    }
+
+    /**
+     * Patches a single changed node into the window's snapshot. Takes ownership of source.
+     */
+    public boolean applyChange(int windowId, AccessibilityNodeInfo source) {
+        USSDNodeSnapshot snapshot = get(windowId);
+        if (snapshot == null || source == null) {
+            if (source != null) source.recycle();
+            invalidate(windowId);
+            return false;
+        }
+
+        int index = snapshot.indexOf(source);
+        if (index < 0) {
+            // Not a node we know about, so the structure changed under us
+            source.recycle();
+            invalidate(windowId);
+            return false;
+        }
+
+        snapshot.replaceNode(index, source);
+        incrementalUpdates++;
+        return true;
+    }
+
+    public void invalidate(int windowId) {
+        USSDNodeSnapshot snapshot = screens.get(windowId);
+        if (snapshot != null) {
+            snapshot.release();
+        }
+    }
+
+    public void invalidateAll() {
+        for (int i = 0; i < screens.size(); i++) {
+            screens.valueAt(i).release();
+        }
+    }
+
+    public void clear() {
+        for (int i = 0; i < screens.size(); i++) {
+            screens.valueAt(i).release();
+        }
+        screens.clear();
+    }
+
+    public void setIncrementalEnabled(boolean incrementalEnabled) {
+        this.incrementalEnabled = incrementalEnabled;
+    }
+
+    public int getFullWalks() { return fullWalks; }
+    public int getIncrementalUpdates() { return incrementalUpdates; }
+
+    public void resetStats() {
+        fullWalks = 0;
+        incrementalUpdates = 0;
+    }
+
+    public String getStatsSummary() {
+        return "fullWalks=" + fullWalks + ", incremental=" + incrementalUpdates;
+    }
+}
@@ -1,6 +1,8 @@
 package com.example.inbuiltussd;
 
 import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
 import android.telecom.Call;
 import android.telecom.InCallService;
 import android.util.Log;
@@ -15,10 +17,15 @@ public class USSDService extends InCallService {
     private static USSDService instance;
 
     private Call currentCall;
-    private int currentState = 0;
-    private String enteredPin = "";
-    private String enteredAmount = "";
-    private int mainMenuSelection = 0;
+
+    // Journey, PIN rules and balance come from the graph
+    private USSDMenuSession session;
+
+    // Simulated network between the journey and the dialog; instant unless configured
+    private USSDCarrier carrier;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private USSDCarrier.Line line;
+    private int callCount = 0;
 
     public static USSDService getInstance() {
         return instance;
@@ -28,6 +35,8 @@ public class USSDService extends InCallService {
     public void onCreate() {
         super.onCreate();
         instance = this;
+        session = new USSDMenuSession(USSDMenuGraphLoader.get(this).get(USSDMenuGraphs.LOOP_SERVICE));
+        carrier = USSDCarrierSettings.load(this);
         Log.d(TAG, "USSDService created");
     }
 
@@ -36,7 +45,6 @@ public class USSDService extends InCallService {
         super.onCallAdded(call);
         Log.d(TAG, "Call added: " + call);
         currentCall = call;
-        currentState = 0;
 
         // Start LOOP USSD journey
         startLoopUssdJourney();
@@ -47,6 +55,8 @@ public class USSDService extends InCallService {
                 Log.d(TAG, "Call state changed: " + state);
                 switch (state) {
                     case Call.STATE_DISCONNECTED:
+                        // Screens still in flight never arrive
+                        handler.removeCallbacksAndMessages(null);
                         sendUssdBroadcast("Session ended. Thank you for using LOOP!", "RESPONSE");
                         resetSession();
                         currentCall = null;
@@ -66,9 +76,21 @@ public class USSDService extends InCallService {
     }
 
     private void startLoopUssdJourney() {
+        line = carrier.open("call-" + (++callCount), System.currentTimeMillis());
+
         // Initial welcome message
-        sendUssdBroadcast("Welcome to the WORLD of LOOP\n\nEnter LOOP USSD service PIN:", "REQUEST");
-        currentState = 1; // Waiting for PIN
+        deliverScreen(session.start());
+
+        // The carrier closes abandoned sessions at its limit, input or not
+        long limit = carrier.getProfile().getSessionLimitMs();
+        if (limit > 0) {
+            final USSDCarrier.Line callLine = line;
+            handler.postDelayed(() -> {
+                if (line == callLine && !session.isEnded() && callLine.timedOut(System.currentTimeMillis())) {
+                    expireSession();
+                }
+            }, limit);
+        }
     }
 
     public void sendUssdReply(String response) {
@@ -78,180 +100,52 @@ public class USSDService extends InCallService {
             return;
         }
 
-        Log.d(TAG, "Processing USSD response: " + response + ", State: " + currentState);
+        Log.d(TAG, "Processing USSD response (" + response.length() + " chars), State: " + session.getStateId());
 
-        switch (currentState) {
-            case 1: // PIN Entry
-                handlePinEntry(response);
-                break;
-            case 2: // Main Menu
-                handleMainMenu(response);
-                break;
-            case 3: // Deposit Menu
-                handleDepositMenu(response);
-                break;
-            case 4: // Amount Entry
-                handleAmountEntry(response);
-                break;
-            case 5: // Confirm PIN
-                handleConfirmPin(response);
-                break;
-            default:
-                sendUssdBroadcast("Invalid state. Session will be reset.", "ERROR");
-                resetSession();
-                break;
-        }
-    }
-
-    private void handlePinEntry(String pin) {
-        if (pin.length() == 4 && pin.matches("\\d+")) {
-            enteredPin = pin;
-            sendUssdBroadcast(
-                    "Welcome to the WORLD of LOOP\n\n" +
-                            "1. Deposit\n" +
-                            "2. Send Money\n" +
-                            "3. Pay to LOOP III\n" +
-                            "4. Pay LOOP to M-PESA\n" +
-                            "5. Loan & Savings\n" +
-                            "6. Account Balance\n" +
-                            "7. About LOOP",
-                    "REQUEST"
-            );
-            currentState = 2; // Main Menu
-        } else {
-            sendUssdBroadcast("Invalid PIN format. Please enter 4-digit PIN:", "REQUEST");
-        }
-    }
-
-    private void handleMainMenu(String selection) {
-        try {
-            mainMenuSelection = Integer.parseInt(selection);
-            switch (mainMenuSelection) {
-                case 1: // Deposit
-                    showDepositMenu();
-                    break;
-                case 2: // Send Money
-                    sendUssdBroadcast("Send Money\n\nFeature coming soon!\n\n0. Back", "REQUEST");
-                    break;
-                case 3: // Pay to LOOP III
-                    sendUssdBroadcast("Pay to LOOP III\n\nFeature coming soon!\n\n0. Back", "REQUEST");
-                    break;
-                case 4: // Pay LOOP to M-PESA
-                    sendUssdBroadcast("Pay LOOP to M-PESA\n\nFeature coming soon!\n\n0. Back", "REQUEST");
-                    break;
-                case 5: // Loan & Savings
-                    sendUssdBroadcast("Loan & Savings\n\nFeature coming soon!\n\n0. Back", "REQUEST");
-                    break;
-                case 6: // Account Balance
-                    sendUssdBroadcast("Your account balance is: KSh 1,500.00\n\n0. Back", "REQUEST");
-                    break;
-                case 7: // About LOOP
-                    sendUssdBroadcast("LOOP - Mobile Money Service\nVersion 2.1.0\n\n0. Back", "REQUEST");
-                    break;
-                default:
-                    sendUssdBroadcast("Invalid selection. Please choose 1-7:", "REQUEST");
-                    break;
-            }
-        } catch (NumberFormatException e) {
-            if ("0".equals(selection)) {
-                // Back to main menu
-                showMainMenu();
-            } else {
-                sendUssdBroadcast("Invalid input. Please enter a number 1-7 or 0 to go back:", "REQUEST");
-            }
+        if (line != null && !session.isEnded() && line.timedOut(System.currentTimeMillis())) {
+            expireSession();
+            return;
         }
+        deliverScreen(session.onInput(response));
     }
 
-    private void showMainMenu() {
-        sendUssdBroadcast(
-                "Welcome to the WORLD of LOOP\n\n" +
-                        "1. Deposit\n" +
-                        "2. Send Money\n" +
-                        "3. Pay to LOOP III\n" +
-                        "4. Pay LOOP to M-PESA\n" +
-                        "5. Loan & Savings\n" +
-                        "6. Account Balance\n" +
-                        "7. About LOOP",
-                "REQUEST"
-        );
-        currentState = 2;
-    }
+    // Sends the journey's screen through the carrier: maybe late, twice, replaced or lost
+    private void deliverScreen(String screen) {
+        String type = session.getType();
+        int fault = line != null ? line.nextFault() : USSDCarrier.DELIVER;
 
-    private void showDepositMenu() {
-        sendUssdBroadcast(
-                "Deposit\n\n" +
-                        "1. MPESA to LOOP\n" +
-                        "2. Airtel Money to LOOP\n\n" +
-                        "0. Back",
-                "REQUEST"
-        );
-        currentState = 3; // Deposit Menu
-    }
-
-    private void handleDepositMenu(String selection) {
-        if ("0".equals(selection)) {
-            showMainMenu();
+        if (fault == USSDCarrier.DROP) {
+            Log.w(TAG, "Carrier dropped the session");
+            resetSession();
             return;
         }
+        if (fault == USSDCarrier.MMI_ERROR) {
+            screen = USSDCarrierProfile.MMI_ERROR_TEXT;
+            type = "ERROR";
+            resetSession();
+        }
 
-        try {
-            int depositOption = Integer.parseInt(selection);
-            if (depositOption == 1 || depositOption == 2) {
-                String provider = depositOption == 1 ? "MPESA" : "Airtel Money";
-                sendUssdBroadcast("Deposit from " + provider + "\n\nEnter Amount:", "REQUEST");
-                currentState = 4; // Amount Entry
+        long delay = line != null ? line.nextLatencyMs(session.getStateId()) : 0;
+        int copies = fault == USSDCarrier.DUPLICATE ? 2 : 1;
+        for (int i = 0; i < copies; i++) {
+            if (delay > 0) {
+                final String message = screen;
+                final String messageType = type;
+                handler.postDelayed(() -> sendUssdBroadcast(message, messageType), delay);
             } else {
-                sendUssdBroadcast("Invalid selection. Choose 1 or 2:", "REQUEST");
+                sendUssdBroadcast(screen, type);
             }
-        } catch (NumberFormatException e) {
-            sendUssdBroadcast("Invalid input. Please enter 1 or 2:", "REQUEST");
-        }
-    }
-
-    private void handleAmountEntry(String amount) {
-        if ("0".equals(amount)) {
-            showDepositMenu();
-            return;
-        }
-
-        if (amount.matches("\\d+") && Integer.parseInt(amount) > 0) {
-            enteredAmount = amount;
-            sendUssdBroadcast("Enter PIN to confirm deposit of KSh " + amount + ":", "REQUEST");
-            currentState = 5; // Confirm PIN
-        } else {
-            sendUssdBroadcast("Invalid amount. Please enter a valid amount:", "REQUEST");
         }
     }
 
-    private void handleConfirmPin(String pin) {
-        if ("0".equals(pin)) {
-            sendUssdBroadcast("Enter Amount:", "REQUEST");
-            currentState = 4;
-            return;
-        }
-
-        if (pin.equals(enteredPin)) {
-            // Successful transaction
-            sendUssdBroadcast(
-                    "Deposit Successful!\n\n" +
-                            "You have deposited KSh " + enteredAmount + " to your LOOP account.\n" +
-                            "New balance: KSh " + (1500 + Integer.parseInt(enteredAmount)) + "\n\n" +
-                            "You will receive an SMS confirmation shortly.\n\n" +
-                            "Thank you for using LOOP!",
-                    "RESPONSE"
-            );
-
-            resetSession();
-        } else {
-            sendUssdBroadcast("PIN incorrect. Please enter your PIN:", "REQUEST");
-        }
+    private void expireSession() {
+        Log.w(TAG, "Carrier session limit reached");
+        resetSession();
+        sendUssdBroadcast(USSDCarrierProfile.MMI_ERROR_TEXT, "ERROR");
     }
 
     private void resetSession() {
-        currentState = 0;
-        enteredPin = "";
-        enteredAmount = "";
-        mainMenuSelection = 0;
+        session.reset();
     }
 
     private void sendUssdBroadcast(String message, String type) {
@@ -279,6 +173,7 @@ public class USSDService extends InCallService {
     @Override
     public void onDestroy() {
         super.onDestroy();
+        handler.removeCallbacksAndMessages(null);
         instance = null;
         Log.d(TAG, "USSDService destroyed");
     }
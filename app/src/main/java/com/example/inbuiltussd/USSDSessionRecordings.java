@@ -0,0 +1,74 @@
+package com.example.inbuiltussd;
+
+import android.content.Context;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Session logs on the device, one file per session under files/ussd_sessions. Only
+ * the newest {@link #MAX_FILES} are kept. Pull them with adb and replay them with the
+ * load generator's --replay.
+ */
+public final class USSDSessionRecordings {
+
+    public static final String DIR_NAME = "ussd_sessions";
+    public static final String EXTENSION = ".ussdlog";
+    static final int MAX_FILES = 50;
+
+    private static final String TAG = "USSD_Recordings";
+
+    private USSDSessionRecordings() {
+    }
+
+    public static File getDirectory(Context context) {
+        return new File(context.getFilesDir(), DIR_NAME);
+    }
+
+    /**
+     * New recorder for this session, or null if the file can't be created.
+     */
+    public static USSDSessionRecorder open(Context context, String sessionId) {
+        File dir = getDirectory(context);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            USSDLog.w(TAG, "⚠️ Cannot create " + dir);
+            return null;
+        }
+        prune(dir);
+
+        String name = System.currentTimeMillis() + "-" + safeName(sessionId) + EXTENSION;
+        try {
+            File file = new File(dir, name);
+            if (USSDLog.DEBUG) USSDLog.d(TAG, "⏺️ Recording session to " + file);
+            return new USSDSessionRecorder(new BufferedOutputStream(new FileOutputStream(file), 8192));
+        } catch (IOException e) {
+            USSDLog.w(TAG, "⚠️ Not recording: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Makes room for one more file; names start with the time, so they sort oldest first
+    private static void prune(File dir) {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(EXTENSION));
+        if (files == null || files.length < MAX_FILES) return;
+
+        Arrays.sort(files);
+        for (int i = 0; i <= files.length - MAX_FILES; i++) {
+            if (!files[i].delete()) USSDLog.w(TAG, "⚠️ Cannot delete " + files[i]);
+        }
+    }
+
+    private static String safeName(String sessionId) {
+        if (sessionId == null || sessionId.isEmpty()) return "session";
+        StringBuilder name = new StringBuilder(sessionId.length());
+        for (int i = 0; i < sessionId.length() && name.length() < 40; i++) {
+            char c = sessionId.charAt(i);
+            boolean safe = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '_';
+            name.append(safe ? c : '_');
+        }
+        return name.toString();
+    }
+}
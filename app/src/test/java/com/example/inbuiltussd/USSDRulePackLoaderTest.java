@@ -0,0 +1,23 @@
+package com.example.inbuiltussd;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class USSDRulePackLoaderTest {
+
+    @Test
+    public void brokenUpdate_fallsBackToBuiltIn() {
+        assertSame(USSDRulePacks.builtIn(), USSDRulePackLoader.fromJson("{\"packs\": [oops"));
+        assertSame(USSDRulePacks.builtIn(), USSDRulePackLoader.fromJson(""));
+    }
+
+    @Test
+    public void validUpdate_replacesBuiltIn() {
+        USSDRulePacks packs = USSDRulePackLoader.fromJson("{\"default\": \"only\", \"packs\": ["
+                + "{\"id\": \"only\", \"rules\": [{\"type\": \"WELCOME\", \"any\": [\"hello\"]}]}]}");
+
+        assertEquals("only", packs.getDefault().getId());
+        assertEquals(USSDResponse.ResponseType.WELCOME, packs.getDefault().getClassifier().classify("Hello there"));
+    }
+}
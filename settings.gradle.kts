@@ -21,4 +21,6 @@ dependencyResolutionManagement {
 
 rootProject.name = "InbuiltUSSD"
 include(":app")
+include(":ussd-core")
+include(":ussd-loadgen")
  
\ No newline at end of file
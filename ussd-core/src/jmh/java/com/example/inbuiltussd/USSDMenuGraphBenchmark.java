@@ -0,0 +1,52 @@
+package com.example.inbuiltussd;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-input cost of the simulated LOOP journeys. Menu navigation only touches
+ * precomputed screens and should show zero allocation under the gc profiler.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class USSDMenuGraphBenchmark {
+
+    private static final String[] DEPOSIT_JOURNEY = {"0202", "1", "1", "1500", "1", "ok"};
+
+    private final USSDMenuSession navigation =
+            new USSDMenuSession(USSDMenuGraphs.builtIn().get(USSDMenuGraphs.LOOP_SIMULATOR));
+    private final USSDMenuSession journey =
+            new USSDMenuSession(USSDMenuGraphs.builtIn().get(USSDMenuGraphs.LOOP_SIMULATOR));
+
+    @Setup
+    public void login() {
+        navigation.start();
+        navigation.onInput("0202");
+    }
+
+    // Main menu -> deposit menu -> back -> invalid choice
+    @Benchmark
+    public void navigateMenus(Blackhole blackhole) {
+        blackhole.consume(navigation.onInput("1"));
+        blackhole.consume(navigation.onInput("0"));
+        blackhole.consume(navigation.onInput("9"));
+    }
+
+    // Full deposit including the templated confirm and receipt screens
+    @Benchmark
+    public void depositJourney(Blackhole blackhole) {
+        blackhole.consume(journey.start());
+        for (String input : DEPOSIT_JOURNEY) {
+            blackhole.consume(journey.onInput(input));
+        }
+    }
+}
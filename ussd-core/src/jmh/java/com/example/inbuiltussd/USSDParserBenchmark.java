@@ -0,0 +1,151 @@
+package com.example.inbuiltussd;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-screen cost of the parsing core over the recorded screens in ussd_screens.txt.
+ * Run with the gc profiler (the jmh task does) to get bytes allocated per screen.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class USSDParserBenchmark {
+
+    @Param({"dialing", "welcome_pin", "invalid_pin", "main_menu", "deposit_menu", "amount_entry",
+            "balance", "deposit_success", "error", "oem_polluted"})
+    public String screen;
+
+    private String text;
+    private String[] lines;
+    // The legacy chain's rules, so classify() and legacyDetermineType() decide by the same rules
+    private final USSDClassifier classifier = new USSDClassifier(
+            USSDClassifier.Rule.allOf(USSDResponse.ResponseType.WELCOME, "welcome", "loop"),
+            USSDClassifier.Rule.anyOf(USSDResponse.ResponseType.PIN_PROMPT, "enter pin", "pin:"),
+            USSDClassifier.Rule.allOf(USSDResponse.ResponseType.MAIN_MENU, "1.", "2."),
+            USSDClassifier.Rule.anyOf(USSDResponse.ResponseType.BALANCE_INFO, "balance", "ksh"),
+            USSDClassifier.Rule.anyOf(USSDResponse.ResponseType.TRANSACTION_SUCCESS, "success", "completed"),
+            USSDClassifier.Rule.anyOf(USSDResponse.ResponseType.ERROR, "invalid", "error", "failed"));
+    private final USSDTextNormalizer normalizer = new USSDTextNormalizer();
+    private final USSDStreamingClassifier streamingClassifier = new USSDStreamingClassifier(classifier);
+    private final USSDScreenTemplates templates = new USSDScreenTemplates();
+
+    @Setup
+    public void loadScreen() throws IOException {
+        text = loadCorpus().get(screen);
+        if (text == null) throw new IllegalStateException("No screen named " + screen);
+        lines = text.split("\n");
+    }
+
+    // Same marker stripping and rules as legacyDetermineType, one scan instead of the chain
+    @Benchmark
+    public USSDResponse.ResponseType classify() {
+        return classifier.classify(USSDTextNormalizer.clean(text));
+    }
+
+    // Screen arriving one line per content-change event
+    @Benchmark
+    public USSDResponse.ResponseType classifyStreaming() {
+        streamingClassifier.reset();
+        for (String line : lines) {
+            streamingClassifier.feed(line);
+        }
+        return streamingClassifier.current();
+    }
+
+    @Benchmark
+    public long normalizeAndFingerprint(Blackhole blackhole) {
+        blackhole.consume(normalizer.normalize(text));
+        return normalizer.getFingerprint();
+    }
+
+    @Benchmark
+    public USSDResponse.ResponseType newResponse() {
+        return new USSDResponse(text).getType();
+    }
+
+    // Everything the service can ask of one screen
+    @Benchmark
+    public void fullResponse(Blackhole blackhole) {
+        USSDResponse response = new USSDResponse(text);
+        blackhole.consume(response.getType());
+        blackhole.consume(response.getMenu());
+        blackhole.consume(response.getBalance());
+        blackhole.consume(response.getInputPrompt());
+    }
+
+    // Repeat screen: normalize, then served from the template table
+    @Benchmark
+    public USSDResponse.ResponseType templateHit() {
+        CharSequence normalized = normalizer.normalize(text);
+        return templates.get(normalizer.getFingerprint(), normalized, classifier).getType();
+    }
+
+    @Benchmark
+    public USSDMenu parseMenuUncached() {
+        return USSDMenu.parse(text);
+    }
+
+    @Benchmark
+    public long parseAmounts() {
+        return USSDMoneyParser.findAmount(text, 0);
+    }
+
+    // The replace/toLowerCase/contains chain the classifier replaced, as a baseline for classify()
+    @Benchmark
+    public USSDResponse.ResponseType legacyDetermineType() {
+        String clean = text.replace("CAPTURED USSD RESPONSE", "")
+                .replace("ACCESSIBILITY EVENT", "")
+                .replace("Event Type:", "")
+                .replace("Class Name:", "")
+                .trim();
+        String lower = clean.toLowerCase();
+        if (lower.contains("welcome") && lower.contains("loop")) return USSDResponse.ResponseType.WELCOME;
+        if (lower.contains("enter pin") || lower.contains("pin:")) return USSDResponse.ResponseType.PIN_PROMPT;
+        if (lower.contains("1.") && lower.contains("2.")) return USSDResponse.ResponseType.MAIN_MENU;
+        if (lower.contains("balance") || lower.contains("ksh")) return USSDResponse.ResponseType.BALANCE_INFO;
+        if (lower.contains("success") || lower.contains("completed")) return USSDResponse.ResponseType.TRANSACTION_SUCCESS;
+        if (lower.contains("invalid") || lower.contains("error") || lower.contains("failed")) return USSDResponse.ResponseType.ERROR;
+        return USSDResponse.ResponseType.UNKNOWN;
+    }
+
+    static Map<String, String> loadCorpus() throws IOException {
+        Map<String, String> screens = new LinkedHashMap<>();
+        try (InputStream in = USSDParserBenchmark.class.getResourceAsStream("/ussd_screens.txt")) {
+            if (in == null) throw new IOException("ussd_screens.txt not on the classpath");
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String name = null;
+            StringBuilder body = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("=== ")) {
+                    if (name != null) screens.put(name, body.toString());
+                    name = line.substring(4).trim();
+                    body.setLength(0);
+                } else if (name != null) {
+                    if (body.length() > 0) body.append('\n');
+                    body.append(line);
+                }
+            }
+            if (name != null) screens.put(name, body.toString());
+        }
+        return screens;
+    }
+}
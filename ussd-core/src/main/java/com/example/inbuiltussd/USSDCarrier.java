@@ -0,0 +1,145 @@
+package com.example.inbuiltussd;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rolls a {@link USSDCarrierProfile}'s dice for simulated sessions. Each session gets
+ * a {@link Line} whose random stream is derived from the carrier seed and the session
+ * id, so a given seed replays the same latencies and faults per session however the
+ * sessions interleave across threads.
+ */
+public final class USSDCarrier {
+
+    // What happens to a screen on its way to the phone
+    public static final int DELIVER = 0;
+    public static final int DROP = 1;        // session gone, nothing shown
+    public static final int MMI_ERROR = 2;   // MMI error instead of the screen, session over
+    public static final int DUPLICATE = 3;   // screen shown twice
+
+    /**
+     * Runs a delivery after the simulated network delay.
+     */
+    public interface Scheduler {
+        void schedule(Runnable delivery, long delayMs);
+    }
+
+    // Ignores the delay; for load tests that only want the faults
+    public static final Scheduler INLINE = (delivery, delayMs) -> delivery.run();
+
+    private static final double Z_95 = 1.6448536;
+
+    private final USSDCarrierProfile profile;
+    private final long seed;
+
+    // Counters
+    private final AtomicLong screens = new AtomicLong();
+    private final AtomicLong drops = new AtomicLong();
+    private final AtomicLong mmiErrors = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong delayMs = new AtomicLong();
+
+    public USSDCarrier(USSDCarrierProfile profile, long seed) {
+        this.profile = profile;
+        this.seed = seed;
+    }
+
+    public Line open(String sessionId, long now) {
+        return new Line(seed ^ (0x9E3779B97F4A7C15L * (sessionId.hashCode() + 1L)), now);
+    }
+
+    public USSDCarrierProfile getProfile() { return profile; }
+
+    public void resetStats() {
+        screens.set(0);
+        drops.set(0);
+        mmiErrors.set(0);
+        duplicates.set(0);
+        timeouts.set(0);
+        delayMs.set(0);
+    }
+
+    public String getStatsSummary() {
+        long shown = screens.get();
+        return "profile=" + profile.getName() + ", screens=" + shown + ", drops=" + drops.get() +
+                ", mmiErrors=" + mmiErrors.get() + ", duplicates=" + duplicates.get() +
+                ", timeouts=" + timeouts.get() + ", avgDelay=" + (shown > 0 ? delayMs.get() / shown : 0) + "ms";
+    }
+
+    /**
+     * One session's connection. Not thread-safe; used under the session's lock.
+     */
+    public final class Line {
+        private long state;
+        private final long openedAt;
+
+        Line(long state, long openedAt) {
+            this.state = state;
+            this.openedAt = openedAt;
+        }
+
+        /**
+         * Fate of the next screen: DELIVER, DROP, MMI_ERROR or DUPLICATE.
+         */
+        public int nextFault() {
+            screens.incrementAndGet();
+            if (!profile.hasFaults()) return DELIVER;
+
+            double roll = nextDouble();
+            if (roll < profile.dropRate) {
+                drops.incrementAndGet();
+                return DROP;
+            }
+            if (roll < profile.dropRate + profile.mmiErrorRate) {
+                mmiErrors.incrementAndGet();
+                return MMI_ERROR;
+            }
+            if (nextDouble() < profile.duplicateRate) {
+                duplicates.incrementAndGet();
+                return DUPLICATE;
+            }
+            return DELIVER;
+        }
+
+        /**
+         * Delay before the screen for this menu state reaches the phone.
+         */
+        public long nextLatencyMs(String stateId) {
+            long[] latency = profile.latencyFor(stateId);
+            long median = latency[0];
+            long p95 = latency[1];
+            if (median == 0 || p95 == median) {
+                delayMs.addAndGet(median);
+                return median;
+            }
+
+            // Log-normal through (median, p95), tail capped at 10x p95
+            double sigma = Math.log((double) p95 / median) / Z_95;
+            double gaussian = Math.sqrt(-2 * Math.log(1 - nextDouble())) * Math.cos(2 * Math.PI * nextDouble());
+            long delay = Math.min(10 * p95, Math.round(median * Math.exp(sigma * gaussian)));
+            delayMs.addAndGet(delay);
+            return delay;
+        }
+
+        /**
+         * True once the carrier's session limit has passed; the session is over.
+         */
+        public boolean timedOut(long now) {
+            long limit = profile.sessionLimitMs;
+            if (limit <= 0 || now - openedAt < limit) return false;
+            timeouts.incrementAndGet();
+            return true;
+        }
+
+        public long getOpenedAt() { return openedAt; }
+
+        // SplitMix64
+        private double nextDouble() {
+            long z = (state += 0x9E3779B97F4A7C15L);
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            z = z ^ (z >>> 31);
+            return (z >>> 11) * 0x1.0p-53;
+        }
+    }
+}
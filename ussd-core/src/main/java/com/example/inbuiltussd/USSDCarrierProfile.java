@@ -0,0 +1,145 @@
+package com.example.inbuiltussd;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * How a simulated carrier behaves: per-screen reply latency (log-normal, given as
+ * median and p95), the chance of each fault per screen, and the session time limit.
+ * Immutable; see {@link USSDCarrier} for the seeded dice.
+ */
+public final class USSDCarrierProfile {
+
+    public static final String MMI_ERROR_TEXT = "Connection problem or invalid MMI code.";
+    public static final long DEFAULT_SESSION_LIMIT_MS = 180_000;
+
+    // Instant, never fails: the simulator as it always behaved
+    public static final USSDCarrierProfile IDEAL = new Builder("ideal").latency(0, 0).sessionLimit(0).build();
+
+    // Everyday network: a second or two per screen, the odd failure
+    public static final USSDCarrierProfile TYPICAL = new Builder("typical")
+            .latency(900, 2_500)
+            .latency("processing", 2_000, 6_000)
+            .faults(0.005, 0.01, 0.01)
+            .build();
+
+    // Congested cell: slow, drops and MMI errors common
+    public static final USSDCarrierProfile FLAKY = new Builder("flaky")
+            .latency(2_500, 9_000)
+            .latency("processing", 5_000, 20_000)
+            .faults(0.03, 0.06, 0.05)
+            .build();
+
+    private final String name;
+    private final long[] defaultLatency;  // {median, p95}
+    private final Map<String, long[]> stateLatencies;
+    final double dropRate;
+    final double mmiErrorRate;
+    final double duplicateRate;
+    final long sessionLimitMs;
+
+    private USSDCarrierProfile(Builder builder) {
+        this.name = builder.name;
+        this.defaultLatency = new long[]{builder.medianMs, builder.p95Ms};
+        this.stateLatencies = Collections.unmodifiableMap(new HashMap<>(builder.stateLatencies));
+        this.dropRate = builder.dropRate;
+        this.mmiErrorRate = builder.mmiErrorRate;
+        this.duplicateRate = builder.duplicateRate;
+        this.sessionLimitMs = builder.sessionLimitMs;
+    }
+
+    /**
+     * Preset by name ("ideal", "typical", "flaky"), or null.
+     */
+    public static USSDCarrierProfile forName(String name) {
+        for (USSDCarrierProfile profile : new USSDCarrierProfile[]{IDEAL, TYPICAL, FLAKY}) {
+            if (profile.name.equalsIgnoreCase(name)) return profile;
+        }
+        return null;
+    }
+
+    public String getName() { return name; }
+    public long getSessionLimitMs() { return sessionLimitMs; }
+
+    // {median, p95} for screens of this state
+    long[] latencyFor(String stateId) {
+        long[] latency = stateId != null ? stateLatencies.get(stateId) : null;
+        return latency != null ? latency : defaultLatency;
+    }
+
+    boolean hasFaults() {
+        return dropRate > 0 || mmiErrorRate > 0 || duplicateRate > 0;
+    }
+
+    public static final class Builder {
+        private final String name;
+        private long medianMs;
+        private long p95Ms;
+        private final Map<String, long[]> stateLatencies = new HashMap<>();
+        private double dropRate;
+        private double mmiErrorRate;
+        private double duplicateRate;
+        private long sessionLimitMs = DEFAULT_SESSION_LIMIT_MS;
+
+        public Builder(String name) {
+            this.name = name;
+        }
+
+        // Starts from an existing profile, e.g. a preset with a shorter session limit
+        public Builder(String name, USSDCarrierProfile base) {
+            this.name = name;
+            this.medianMs = base.defaultLatency[0];
+            this.p95Ms = base.defaultLatency[1];
+            this.stateLatencies.putAll(base.stateLatencies);
+            this.dropRate = base.dropRate;
+            this.mmiErrorRate = base.mmiErrorRate;
+            this.duplicateRate = base.duplicateRate;
+            this.sessionLimitMs = base.sessionLimitMs;
+        }
+
+        public Builder latency(long medianMs, long p95Ms) {
+            checkLatency(medianMs, p95Ms);
+            this.medianMs = medianMs;
+            this.p95Ms = p95Ms;
+            return this;
+        }
+
+        // Screens entered in this menu graph state
+        public Builder latency(String stateId, long medianMs, long p95Ms) {
+            checkLatency(medianMs, p95Ms);
+            stateLatencies.put(stateId, new long[]{medianMs, p95Ms});
+            return this;
+        }
+
+        /**
+         * Per-screen probabilities: session silently dropped, MMI error instead of the
+         * screen, screen delivered twice.
+         */
+        public Builder faults(double dropRate, double mmiErrorRate, double duplicateRate) {
+            if (dropRate < 0 || mmiErrorRate < 0 || duplicateRate < 0 || dropRate + mmiErrorRate > 1) {
+                throw new IllegalArgumentException("Fault rates out of range");
+            }
+            this.dropRate = dropRate;
+            this.mmiErrorRate = mmiErrorRate;
+            this.duplicateRate = duplicateRate;
+            return this;
+        }
+
+        // 0 for no limit
+        public Builder sessionLimit(long sessionLimitMs) {
+            this.sessionLimitMs = Math.max(0, sessionLimitMs);
+            return this;
+        }
+
+        public USSDCarrierProfile build() {
+            return new USSDCarrierProfile(this);
+        }
+
+        private static void checkLatency(long medianMs, long p95Ms) {
+            if (medianMs < 0 || p95Ms < medianMs) {
+                throw new IllegalArgumentException("Latency needs 0 <= median <= p95");
+            }
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.example.inbuiltussd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Classifies USSD screen text against an ordered list of keyword rules. All keywords
+ * are compiled into one Aho-Corasick automaton, so the text is scanned once, folding
+ * case as it goes, and the first rule (in priority order) whose keywords were seen wins.
+ * A keyword only counts at the start of a word: "pin" finds "PIN:" but not "shopping",
+ * while "success" still finds "Successful". A menu-options rule matches screens with
+ * option lines 1 and 2, as {@link USSDMenu} reads them, so "Version 2.1.0" is not a menu.
+ * Instances are immutable and safe to share between threads.
+ */
+public class USSDClassifier {
+
+    public static final int MAX_KEYWORDS = 63;
+
+    // Hit bit for "has options 1 and 2"; keywords use the bits below it
+    static final long MENU_OPTIONS = 1L << 63;
+
+    /**
+     * A rule matches when every group has at least one keyword in the text, or for a
+     * menu-options rule, when the text has numbered options 1 and 2. Its action is what
+     * the session does with a screen the rule decides.
+     */
+    public static class Rule {
+        final USSDResponse.ResponseType type;
+        final String[][] groups;
+        final boolean menuOptions;
+        final USSDResponse.Action action;
+
+        private Rule(USSDResponse.ResponseType type, String[][] groups, boolean menuOptions,
+                     USSDResponse.Action action) {
+            this.type = type;
+            this.groups = groups;
+            this.menuOptions = menuOptions;
+            this.action = action;
+        }
+
+        public static Rule anyOf(USSDResponse.ResponseType type, String... keywords) {
+            return new Rule(type, new String[][]{keywords}, false, USSDResponse.Action.NONE);
+        }
+
+        public static Rule allOf(USSDResponse.ResponseType type, String... keywords) {
+            String[][] groups = new String[keywords.length][];
+            for (int i = 0; i < keywords.length; i++) {
+                groups[i] = new String[]{keywords[i]};
+            }
+            return new Rule(type, groups, false, USSDResponse.Action.NONE);
+        }
+
+        // Lines starting "1." and "2." (or "1)" and "2)")
+        public static Rule menuOptions(USSDResponse.ResponseType type) {
+            return new Rule(type, new String[0][], true, USSDResponse.Action.NONE);
+        }
+
+        public Rule withAction(USSDResponse.Action action) {
+            return new Rule(type, groups, menuOptions, action);
+        }
+    }
+
+    // Rules flattened to keyword masks: rule r spans groupMasks[ruleStart[r]..ruleStart[r + 1])
+    private final USSDResponse.ResponseType[] ruleTypes;
+    private final USSDResponse.Action[] ruleActions;
+    private final int[] ruleStart;
+    private final long[] groupMasks;
+    private final boolean usesMenuOptions;
+
+    // Keywords starting with a letter or digit, which must not follow one; their lengths
+    private final long wordStartMask;
+    private final int[] keywordLengths;
+
+    // Automaton: dense transition table over the keywords' alphabet, symbol 0 = any other char
+    private final char[] asciiSymbols = new char[128];
+    private final char[] extraChars;
+    private final char[] extraSymbols;
+    private final int alphabetSize;
+    private final int[] transitions;
+    private final long[] outputs;
+
+    /**
+     * The default pack's rules from the bundled rule file (see {@link USSDRulePacks}).
+     */
+    public static USSDClassifier getDefault() {
+        return USSDRulePacks.builtIn().getDefault().getClassifier();
+    }
+
+    public USSDClassifier(Rule... rules) {
+        this(Arrays.asList(rules));
+    }
+
+    public USSDClassifier(List<Rule> rules) {
+        Map<String, Integer> keywordIds = new HashMap<>();
+        List<String> keywords = new ArrayList<>();
+
+        int groupCount = 0;
+        for (Rule rule : rules) groupCount += rule.menuOptions ? 1 : rule.groups.length;
+
+        ruleTypes = new USSDResponse.ResponseType[rules.size()];
+        ruleActions = new USSDResponse.Action[rules.size()];
+        ruleStart = new int[rules.size() + 1];
+        groupMasks = new long[groupCount];
+
+        int group = 0;
+        boolean menuOptions = false;
+        for (int r = 0; r < rules.size(); r++) {
+            Rule rule = rules.get(r);
+            ruleTypes[r] = rule.type;
+            ruleActions[r] = rule.action;
+            ruleStart[r] = group;
+            if (rule.menuOptions) {
+                groupMasks[group++] = MENU_OPTIONS;
+                menuOptions = true;
+                continue;
+            }
+            for (String[] keywordGroup : rule.groups) {
+                long mask = 0;
+                for (String keyword : keywordGroup) {
+                    String folded = fold(keyword);
+                    if (folded.isEmpty()) continue;
+
+                    Integer id = keywordIds.get(folded);
+                    if (id == null) {
+                        if (keywords.size() == MAX_KEYWORDS) {
+                            throw new IllegalArgumentException("More than " + MAX_KEYWORDS + " keywords");
+                        }
+                        id = keywords.size();
+                        keywordIds.put(folded, id);
+                        keywords.add(folded);
+                    }
+                    mask |= 1L << id;
+                }
+                groupMasks[group++] = mask;
+            }
+        }
+        ruleStart[rules.size()] = group;
+        usesMenuOptions = menuOptions;
+
+        long wordStarts = 0;
+        keywordLengths = new int[keywords.size()];
+        for (int k = 0; k < keywords.size(); k++) {
+            String keyword = keywords.get(k);
+            keywordLengths[k] = keyword.length();
+            if (Character.isLetterOrDigit(keyword.charAt(0))) wordStarts |= 1L << k;
+        }
+        wordStartMask = wordStarts;
+
+        // Alphabet: every distinct keyword char gets a symbol, starting at 1
+        StringBuilder extra = new StringBuilder();
+        int symbols = 1;
+        for (String keyword : keywords) {
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = keyword.charAt(i);
+                if (c < 128) {
+                    if (asciiSymbols[c] == 0) asciiSymbols[c] = (char) symbols++;
+                } else if (extra.indexOf(String.valueOf(c)) < 0) {
+                    extra.append(c);
+                }
+            }
+        }
+        extraChars = extra.toString().toCharArray();
+        Arrays.sort(extraChars);
+        extraSymbols = new char[extraChars.length];
+        for (int i = 0; i < extraChars.length; i++) {
+            extraSymbols[i] = (char) symbols++;
+        }
+        alphabetSize = symbols;
+
+        // Trie
+        int maxStates = 1;
+        for (String keyword : keywords) maxStates += keyword.length();
+        int[] trie = new int[maxStates * alphabetSize];
+        Arrays.fill(trie, -1);
+        long[] out = new long[maxStates];
+        int states = 1;
+
+        for (int k = 0; k < keywords.size(); k++) {
+            String keyword = keywords.get(k);
+            int state = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                int slot = state * alphabetSize + symbolOf(keyword.charAt(i));
+                if (trie[slot] < 0) trie[slot] = states++;
+                state = trie[slot];
+            }
+            out[state] |= 1L << k;
+        }
+
+        // Failure links, resolved breadth-first straight into the transition table
+        int[] fail = new int[states];
+        int[] queue = new int[states];
+        int queueHead = 0;
+        int queueTail = 0;
+
+        for (int s = 0; s < alphabetSize; s++) {
+            int next = trie[s];
+            if (next < 0) {
+                trie[s] = 0;
+            } else {
+                fail[next] = 0;
+                queue[queueTail++] = next;
+            }
+        }
+
+        while (queueHead < queueTail) {
+            int state = queue[queueHead++];
+            out[state] |= out[fail[state]];
+            for (int s = 0; s < alphabetSize; s++) {
+                int slot = state * alphabetSize + s;
+                int next = trie[slot];
+                int fallback = trie[fail[state] * alphabetSize + s];
+                if (next < 0) {
+                    trie[slot] = fallback;
+                } else {
+                    fail[next] = fallback;
+                    queue[queueTail++] = next;
+                }
+            }
+        }
+
+        transitions = Arrays.copyOf(trie, states * alphabetSize);
+        outputs = Arrays.copyOf(out, states);
+    }
+
+    /**
+     * Type of the highest-priority matching rule, or UNKNOWN.
+     */
+    public USSDResponse.ResponseType classify(CharSequence text) {
+        return decide(scan(text));
+    }
+
+    /**
+     * Bit set of the keywords found in text (bit n = n-th distinct keyword), plus
+     * {@link #MENU_OPTIONS} if a menu-options rule applies.
+     */
+    public long scan(CharSequence text) {
+        if (text == null) return 0;
+
+        long hits = 0;
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = transitions[state * alphabetSize + symbolOf(Character.toLowerCase(text.charAt(i)))];
+            long found = outputs[state] & ~hits;
+            if (found != 0) {
+                hits |= (found & ~wordStartMask) | atWordStart(text, i, found & wordStartMask);
+            }
+        }
+
+        if (usesMenuOptions && (USSDMenu.optionNumbers(text) & 0b110) == 0b110) hits |= MENU_OPTIONS;
+        return hits;
+    }
+
+    public USSDResponse.ResponseType decide(long hits) {
+        int rule = firstMatch(hits);
+        return rule >= 0 ? ruleTypes[rule] : USSDResponse.ResponseType.UNKNOWN;
+    }
+
+    /**
+     * Action of the rule that decides, or NONE.
+     */
+    public USSDResponse.Action actionFor(long hits) {
+        int rule = firstMatch(hits);
+        return rule >= 0 ? ruleActions[rule] : USSDResponse.Action.NONE;
+    }
+
+    /**
+     * True if any rule for type matches, even one outranked by the rule that decided.
+     */
+    public boolean matchesType(long hits, USSDResponse.ResponseType type) {
+        for (int r = 0; r < ruleTypes.length; r++) {
+            if (ruleTypes[r] == type && matches(r, hits)) return true;
+        }
+        return false;
+    }
+
+    private int firstMatch(long hits) {
+        for (int r = 0; r < ruleTypes.length; r++) {
+            if (matches(r, hits)) return r;
+        }
+        return -1;
+    }
+
+    private boolean matches(int rule, long hits) {
+        for (int g = ruleStart[rule]; g < ruleStart[rule + 1]; g++) {
+            if ((hits & groupMasks[g]) == 0) return false;
+        }
+        return true;
+    }
+
+    // Those of the keywords ending at end that don't continue a word
+    private long atWordStart(CharSequence text, int end, long candidates) {
+        long accepted = 0;
+        while (candidates != 0) {
+            int k = Long.numberOfTrailingZeros(candidates);
+            candidates &= candidates - 1;
+            int start = end - keywordLengths[k] + 1;
+            if (start == 0 || !Character.isLetterOrDigit(text.charAt(start - 1))) accepted |= 1L << k;
+        }
+        return accepted;
+    }
+
+    private int symbolOf(char c) {
+        if (c < 128) return asciiSymbols[c];
+        int i = Arrays.binarySearch(extraChars, c);
+        return i >= 0 ? extraSymbols[i] : 0;
+    }
+
+    private static String fold(String keyword) {
+        StringBuilder folded = new StringBuilder(keyword.length());
+        for (int i = 0; i < keyword.length(); i++) {
+            folded.append(Character.toLowerCase(keyword.charAt(i)));
+        }
+        return folded.toString();
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.inbuiltussd;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal JSON reader for the bundled rule and menu files, so they can be read without
+ * Android's org.json. Objects become maps (in file order), arrays lists, numbers Double.
+ * Malformed input throws IllegalArgumentException with the offending position.
+ */
+final class USSDJson {
+
+    private final String json;
+    private int pos;
+
+    private USSDJson(String json) {
+        this.json = json;
+    }
+
+    static Object parse(String json) {
+        if (json == null) throw new IllegalArgumentException("No JSON");
+
+        USSDJson reader = new USSDJson(json);
+        Object value = reader.value();
+        reader.skipWhitespace();
+        if (reader.pos < json.length()) throw reader.error("Trailing characters");
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> object(Object value, String what) {
+        if (value instanceof Map) return (Map<String, Object>) value;
+        throw new IllegalArgumentException(what + " must be an object");
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<Object> array(Object value, String what) {
+        if (value instanceof List) return (List<Object>) value;
+        throw new IllegalArgumentException(what + " must be an array");
+    }
+
+    static String string(Object value, String what) {
+        if (value instanceof String) return (String) value;
+        throw new IllegalArgumentException(what + " must be a string");
+    }
+
+    static String optString(Map<String, Object> object, String key, String fallback) {
+        Object value = object.get(key);
+        return value != null ? string(value, key) : fallback;
+    }
+
+    static String[] strings(Object value, String what) {
+        List<Object> list = array(value, what);
+        String[] result = new String[list.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = string(list.get(i), what);
+        }
+        return result;
+    }
+
+    private Object value() {
+        skipWhitespace();
+        if (pos >= json.length()) throw error("Unexpected end");
+
+        char c = json.charAt(pos);
+        switch (c) {
+            case '{': return objectValue();
+            case '[': return arrayValue();
+            case '"': return stringValue();
+            case 't': return literal("true", Boolean.TRUE);
+            case 'f': return literal("false", Boolean.FALSE);
+            case 'n': return literal("null", null);
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) return numberValue();
+                throw error("Unexpected '" + c + "'");
+        }
+    }
+
+    private Map<String, Object> objectValue() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        pos++;
+        if (consume('}')) return result;
+        do {
+            skipWhitespace();
+            if (pos >= json.length() || json.charAt(pos) != '"') throw error("Expected a key");
+            String key = stringValue();
+            if (!consume(':')) throw error("Expected ':'");
+            result.put(key, value());
+        } while (consume(','));
+        if (!consume('}')) throw error("Expected ',' or '}'");
+        return result;
+    }
+
+    private List<Object> arrayValue() {
+        List<Object> result = new ArrayList<>();
+        pos++;
+        if (consume(']')) return result;
+        do {
+            result.add(value());
+        } while (consume(','));
+        if (!consume(']')) throw error("Expected ',' or ']'");
+        return result;
+    }
+
+    private String stringValue() {
+        StringBuilder result = new StringBuilder();
+        pos++;
+        while (pos < json.length()) {
+            char c = json.charAt(pos++);
+            if (c == '"') return result.toString();
+            if (c != '\\') {
+                result.append(c);
+                continue;
+            }
+            if (pos >= json.length()) break;
+
+            char escaped = json.charAt(pos++);
+            switch (escaped) {
+                case 'n': result.append('\n'); break;
+                case 't': result.append('\t'); break;
+                case 'r': result.append('\r'); break;
+                case 'b': result.append('\b'); break;
+                case 'f': result.append('\f'); break;
+                case 'u':
+                    if (pos + 4 > json.length()) throw error("Bad \\u escape");
+                    try {
+                        result.append((char) Integer.parseInt(json.substring(pos, pos + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw error("Bad \\u escape");
+                    }
+                    pos += 4;
+                    break;
+                default: result.append(escaped); break;
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    private Double numberValue() {
+        int start = pos;
+        while (pos < json.length() && "+-.eE0123456789".indexOf(json.charAt(pos)) >= 0) pos++;
+        try {
+            return Double.valueOf(json.substring(start, pos));
+        } catch (NumberFormatException e) {
+            throw error("Bad number");
+        }
+    }
+
+    private Object literal(String word, Object value) {
+        if (!json.startsWith(word, pos)) throw error("Unexpected token");
+        pos += word.length();
+        return value;
+    }
+
+    private boolean consume(char expected) {
+        skipWhitespace();
+        if (pos < json.length() && json.charAt(pos) == expected) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void skipWhitespace() {
+        while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) pos++;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at " + pos);
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.inbuiltussd;
+
+import java.util.Arrays;
+
+/**
+ * Numbered options of a menu screen ("1. Deposit" ... "0. Exit") as an ordered
+ * number-to-label table, plus the text above them. Immutable.
+ */
+public final class USSDMenu {
+
+    public static final USSDMenu EMPTY = new USSDMenu("", new int[0], new String[0]);
+
+    private final String title;
+    private final int[] numbers;
+    private final String[] labels;
+
+    private USSDMenu(String title, int[] numbers, String[] labels) {
+        this.title = title;
+        this.numbers = numbers;
+        this.labels = labels;
+    }
+
+    /**
+     * Lines starting with "<number>." or "<number>)" become options; non-option lines
+     * before the first option form the title. Returns EMPTY if there are no options.
+     */
+    public static USSDMenu parse(CharSequence text) {
+        if (text == null) return EMPTY;
+
+        StringBuilder title = new StringBuilder();
+        int[] numbers = new int[8];
+        String[] labels = new String[8];
+        int count = 0;
+
+        int length = text.length();
+        int lineStart = 0;
+        while (lineStart < length) {
+            int lineEnd = lineStart;
+            while (lineEnd < length && text.charAt(lineEnd) != '\n') lineEnd++;
+
+            int start = lineStart;
+            int end = lineEnd;
+            while (start < end && text.charAt(start) <= ' ') start++;
+            while (end > start && text.charAt(end - 1) <= ' ') end--;
+
+            int labelStart = optionLabelStart(text, start, end);
+            if (labelStart >= 0) {
+                if (count == numbers.length) {
+                    numbers = Arrays.copyOf(numbers, count * 2);
+                    labels = Arrays.copyOf(labels, count * 2);
+                }
+                numbers[count] = parseNumber(text, start);
+                labels[count] = text.subSequence(labelStart, end).toString();
+                count++;
+            } else if (count == 0 && start < end) {
+                if (title.length() > 0) title.append('\n');
+                title.append(text, start, end);
+            }
+
+            lineStart = lineEnd + 1;
+        }
+
+        if (count == 0) return EMPTY;
+        return new USSDMenu(title.toString(), Arrays.copyOf(numbers, count), Arrays.copyOf(labels, count));
+    }
+
+    /**
+     * Bit n set for each option line numbered n (0-62) in text, without building a menu.
+     */
+    static long optionNumbers(CharSequence text) {
+        long numbers = 0;
+        int length = text.length();
+        int lineStart = 0;
+        while (lineStart < length) {
+            int lineEnd = lineStart;
+            while (lineEnd < length && text.charAt(lineEnd) != '\n') lineEnd++;
+
+            int start = lineStart;
+            int end = lineEnd;
+            while (start < end && text.charAt(start) <= ' ') start++;
+            while (end > start && text.charAt(end - 1) <= ' ') end--;
+            if (optionLabelStart(text, start, end) >= 0) {
+                int number = parseNumber(text, start);
+                if (number < 63) numbers |= 1L << number;
+            }
+
+            lineStart = lineEnd + 1;
+        }
+        return numbers;
+    }
+
+    public int size() { return numbers.length; }
+    public boolean isEmpty() { return numbers.length == 0; }
+    public String getTitle() { return title; }
+    public int getNumber(int index) { return numbers[index]; }
+    public String getLabel(int index) { return labels[index]; }
+
+    public String labelFor(int number) {
+        for (int i = 0; i < numbers.length; i++) {
+            if (numbers[i] == number) return labels[i];
+        }
+        return null;
+    }
+
+    /**
+     * Number of the option whose label equals label, or failing that contains it,
+     * ignoring case; -1 if none does.
+     */
+    public int findByLabel(String label) {
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i].equalsIgnoreCase(label)) return numbers[i];
+        }
+        for (int i = 0; i < labels.length; i++) {
+            if (USSDStrings.containsIgnoreCase(labels[i], label)) return numbers[i];
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder(title);
+        for (int i = 0; i < numbers.length; i++) {
+            out.append('\n').append(numbers[i]).append(". ").append(labels[i]);
+        }
+        return out.toString();
+    }
+
+    static boolean isOptionLine(CharSequence line) {
+        int start = 0;
+        int end = line.length();
+        while (start < end && line.charAt(start) <= ' ') start++;
+        return optionLabelStart(line, start, end) >= 0;
+    }
+
+    // Start of the label if text[start, end) reads "<digits>. label" or "<digits>) label", else -1
+    private static int optionLabelStart(CharSequence text, int start, int end) {
+        int i = start;
+        while (i < end && i - start < 3 && Character.isDigit(text.charAt(i))) i++;
+        if (i == start || i == end) return -1;
+
+        char delimiter = text.charAt(i);
+        if (delimiter != '.' && delimiter != ')') return -1;
+        i++;
+
+        // "1.5 KSh" is an amount, not an option
+        if (i < end && text.charAt(i) > ' ') return -1;
+        while (i < end && text.charAt(i) <= ' ') i++;
+        return i < end ? i : -1;
+    }
+
+    private static int parseNumber(CharSequence text, int start) {
+        int number = 0;
+        for (int i = start; Character.isDigit(text.charAt(i)); i++) {
+            number = number * 10 + (text.charAt(i) - '0');
+        }
+        return number;
+    }
+}
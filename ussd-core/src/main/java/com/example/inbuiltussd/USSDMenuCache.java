@@ -0,0 +1,98 @@
+package com.example.inbuiltussd;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Parsed menus keyed by screen fingerprint. Carrier menus are the same text every
+ * session, so each is parsed once and served from memory afterwards. Shared
+ * process-wide, so it is split into stripes by fingerprint, each a small LRU with its
+ * own lock, and a miss parses outside the lock; threads only contend when they hit
+ * the same stripe at the same moment.
+ */
+public final class USSDMenuCache {
+
+    public static final int DEFAULT_CAPACITY = 32;
+
+    private static final int STRIPES = 4;
+
+    private static final USSDMenuCache SHARED = new USSDMenuCache(DEFAULT_CAPACITY);
+
+    // One LRU and its counters; also its own lock
+    private static final class Stripe {
+        final Map<Long, USSDMenu> menus;
+        long hits = 0;
+        long misses = 0;
+
+        Stripe(final int capacity) {
+            menus = new LinkedHashMap<Long, USSDMenu>(capacity, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, USSDMenu> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+    }
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    public static USSDMenuCache getShared() {
+        return SHARED;
+    }
+
+    public USSDMenuCache(int capacity) {
+        int perStripe = Math.max(1, (capacity + STRIPES - 1) / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+    }
+
+    /**
+     * Menu for the screen with this fingerprint, parsing text on a miss.
+     */
+    public USSDMenu get(long fingerprint, CharSequence text) {
+        Stripe stripe = stripeFor(fingerprint);
+        synchronized (stripe) {
+            USSDMenu menu = stripe.menus.get(fingerprint);
+            if (menu != null) {
+                stripe.hits++;
+                return menu;
+            }
+            stripe.misses++;
+        }
+
+        // Two threads missing on the same screen both parse it; either result is fine
+        USSDMenu menu = USSDMenu.parse(text);
+        synchronized (stripe) {
+            stripe.menus.put(fingerprint, menu);
+        }
+        return menu;
+    }
+
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.menus.clear();
+            }
+        }
+    }
+
+    public String getStatsSummary() {
+        int entries = 0;
+        long hits = 0;
+        long misses = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                entries += stripe.menus.size();
+                hits += stripe.hits;
+                misses += stripe.misses;
+            }
+        }
+        return "entries=" + entries + ", hits=" + hits + ", misses=" + misses;
+    }
+
+    private Stripe stripeFor(long fingerprint) {
+        // FNV-1a scatters well in the low bits; fold the high half in anyway
+        return stripes[(int) (fingerprint ^ (fingerprint >>> 32)) & (STRIPES - 1)];
+    }
+}
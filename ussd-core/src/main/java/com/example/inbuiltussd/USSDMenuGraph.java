@@ -0,0 +1,384 @@
+package com.example.inbuiltussd;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A USSD journey as data: states with their screen text, numbered options and free
+ * input (validated, optionally stored in a variable), compiled into arrays indexed by
+ * state id. Screens without placeholders are rendered once at build time. Immutable;
+ * each session walks it with its own {@link USSDMenuSession}.
+ *
+ * Placeholders: {@code {variable}} for a declared variable (money variables render as
+ * "1,500.00") and {@code {timestamp}} for the session clock.
+ */
+public final class USSDMenuGraph {
+
+    // Free-input validators
+    static final int INPUT_NONE = 0;
+    static final int INPUT_ANY = 1;
+    static final int INPUT_DIGITS = 2;   // exactly inputLength digits
+    static final int INPUT_EQUALS = 3;   // exactly inputArg
+    static final int INPUT_AMOUNT = 4;   // positive money amount
+    static final int INPUT_MATCHES = 5;  // equals the text variable in argSlot
+
+    static final int TIMESTAMP_SLOT = -2;
+
+    /**
+     * Screen text split at its placeholders; constant when there are none.
+     */
+    static final class Template {
+        final String constant;
+        final String[] literals;  // literals[i] precedes slots[i]; one extra trailing literal
+        final int[] slots;
+
+        Template(String constant, String[] literals, int[] slots) {
+            this.constant = constant;
+            this.literals = literals;
+            this.slots = slots;
+        }
+    }
+
+    static final class Transition {
+        final int target;
+        final int[] setSlots;
+        final String[] setValues;
+        final int addTo;    // money slot credited with addFrom, or -1
+        final int addFrom;
+
+        Transition(int target, int[] setSlots, String[] setValues, int addTo, int addFrom) {
+            this.target = target;
+            this.setSlots = setSlots;
+            this.setValues = setValues;
+            this.addTo = addTo;
+            this.addFrom = addFrom;
+        }
+    }
+
+    final String id;
+    final int initialState;
+    final String errorText;
+    final String errorType;
+
+    // Variables
+    final String[] variableNames;
+    final boolean[] moneyVariables;
+    final String[] initialTexts;
+    final long[] initialAmounts;
+
+    // States
+    final String[] stateIds;
+    final Template[] texts;
+    final String[] types;
+    final boolean[] ends;
+    final Template[] invalidTexts;
+    final String[][] optionKeys;
+    final Transition[][] optionTransitions;
+    final int[] inputKinds;
+    final String[] inputArgs;
+    final int[] inputLengths;
+    final int[] inputArgSlots;
+    final int[] inputStoreSlots;
+    final Transition[] inputTransitions;
+
+    private USSDMenuGraph(Builder builder) {
+        id = builder.id;
+        errorText = builder.errorText;
+        errorType = builder.errorType;
+
+        int variableCount = builder.variables.size();
+        variableNames = new String[variableCount];
+        moneyVariables = new boolean[variableCount];
+        initialTexts = new String[variableCount];
+        initialAmounts = new long[variableCount];
+        for (int v = 0; v < variableCount; v++) {
+            Builder.VariableSpec spec = builder.variables.get(v);
+            variableNames[v] = spec.name;
+            moneyVariables[v] = spec.money;
+            if (spec.money) {
+                long amount = USSDMoneyParser.parse(spec.initial);
+                initialAmounts[v] = amount != USSDMoneyParser.NONE ? amount : 0;
+            } else {
+                initialTexts[v] = spec.initial != null ? spec.initial : "";
+            }
+        }
+
+        int stateCount = builder.states.size();
+        stateIds = new String[stateCount];
+        texts = new Template[stateCount];
+        types = new String[stateCount];
+        ends = new boolean[stateCount];
+        invalidTexts = new Template[stateCount];
+        optionKeys = new String[stateCount][];
+        optionTransitions = new Transition[stateCount][];
+        inputKinds = new int[stateCount];
+        inputArgs = new String[stateCount];
+        inputLengths = new int[stateCount];
+        inputArgSlots = new int[stateCount];
+        inputStoreSlots = new int[stateCount];
+        inputTransitions = new Transition[stateCount];
+
+        for (int s = 0; s < stateCount; s++) {
+            Builder.StateSpec spec = builder.states.get(s);
+            stateIds[s] = spec.id;
+            texts[s] = builder.compileTemplate(spec.text);
+            types[s] = spec.type;
+            ends[s] = spec.end;
+            invalidTexts[s] = spec.invalidText != null ? builder.compileTemplate(spec.invalidText) : texts[s];
+
+            optionKeys[s] = spec.optionKeys.toArray(new String[0]);
+            optionTransitions[s] = new Transition[spec.options.size()];
+            for (int o = 0; o < spec.options.size(); o++) {
+                optionTransitions[s][o] = builder.compileTransition(spec.options.get(o));
+            }
+
+            inputKinds[s] = INPUT_NONE;
+            inputArgSlots[s] = -1;
+            inputStoreSlots[s] = -1;
+            if (spec.input != null) {
+                compileInput(builder, s, spec);
+            }
+        }
+
+        initialState = builder.stateIndex(builder.initialState);
+    }
+
+    private void compileInput(Builder builder, int state, Builder.StateSpec spec) {
+        String validator = spec.validator != null ? spec.validator : "any";
+        int colon = validator.indexOf(':');
+        String kind = colon < 0 ? validator : validator.substring(0, colon);
+        String arg = colon < 0 ? null : validator.substring(colon + 1);
+
+        switch (kind) {
+            case "any":
+                inputKinds[state] = INPUT_ANY;
+                break;
+            case "digits":
+                inputKinds[state] = INPUT_DIGITS;
+                try {
+                    inputLengths[state] = Integer.parseInt(arg);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("digits needs a length: " + validator);
+                }
+                break;
+            case "equals":
+                inputKinds[state] = INPUT_EQUALS;
+                inputArgs[state] = arg != null ? arg : "";
+                break;
+            case "amount":
+                inputKinds[state] = INPUT_AMOUNT;
+                break;
+            case "matches":
+                inputKinds[state] = INPUT_MATCHES;
+                inputArgSlots[state] = builder.variableIndex(arg);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown validator '" + validator + "' in " + spec.id);
+        }
+
+        if (spec.store != null) {
+            int slot = builder.variableIndex(spec.store);
+            if (builder.variables.get(slot).money && inputKinds[state] != INPUT_AMOUNT) {
+                throw new IllegalArgumentException("Money variable " + spec.store + " needs the amount validator");
+            }
+            inputStoreSlots[state] = slot;
+        }
+        inputTransitions[state] = builder.compileTransition(spec.input);
+    }
+
+    public String getId() { return id; }
+    public int getStateCount() { return stateIds.length; }
+
+    public int stateIndex(String stateId) {
+        for (int s = 0; s < stateIds.length; s++) {
+            if (stateIds[s].equals(stateId)) return s;
+        }
+        return -1;
+    }
+
+    public static final class Builder {
+
+        /**
+         * Where an option or valid input leads, and what it does on the way.
+         */
+        public static final class TransitionSpec {
+            final String target;
+            final Map<String, String> set = new HashMap<>();
+            String addTo;
+            String addFrom;
+
+            public TransitionSpec(String target) {
+                this.target = target;
+            }
+
+            public TransitionSpec set(String variable, String value) {
+                set.put(variable, value);
+                return this;
+            }
+
+            public TransitionSpec add(String moneyVariable, String fromMoneyVariable) {
+                addTo = moneyVariable;
+                addFrom = fromMoneyVariable;
+                return this;
+            }
+        }
+
+        static final class VariableSpec {
+            final String name;
+            final boolean money;
+            final String initial;
+
+            VariableSpec(String name, boolean money, String initial) {
+                this.name = name;
+                this.money = money;
+                this.initial = initial;
+            }
+        }
+
+        static final class StateSpec {
+            final String id;
+            final String text;
+            final String type;
+            final boolean end;
+            final String invalidText;
+            final List<String> optionKeys = new ArrayList<>();
+            final List<TransitionSpec> options = new ArrayList<>();
+            TransitionSpec input;
+            String validator;
+            String store;
+
+            StateSpec(String id, String text, String type, boolean end, String invalidText) {
+                this.id = id;
+                this.text = text;
+                this.type = type;
+                this.end = end;
+                this.invalidText = invalidText;
+            }
+        }
+
+        private final String id;
+        private final List<VariableSpec> variables = new ArrayList<>();
+        private final List<StateSpec> states = new ArrayList<>();
+        private String initialState;
+        private String errorText = "Session error. Please start again.";
+        private String errorType = "ERROR";
+
+        public Builder(String id) {
+            this.id = id;
+        }
+
+        public Builder variable(String name, boolean money, String initial) {
+            variables.add(new VariableSpec(name, money, initial));
+            return this;
+        }
+
+        public Builder state(String stateId, String text, String type, boolean end, String invalidText) {
+            if (initialState == null) initialState = stateId;
+            states.add(new StateSpec(stateId, text, type, end, invalidText));
+            return this;
+        }
+
+        public Builder option(String stateId, String key, TransitionSpec transition) {
+            StateSpec state = states.get(stateIndex(stateId));
+            state.optionKeys.add(key);
+            state.options.add(transition);
+            return this;
+        }
+
+        /**
+         * Free input accepted by validator ("any", "digits:4", "equals:0202", "amount",
+         * "matches:pin"), stored in variable store (may be null). Options win over input.
+         */
+        public Builder input(String stateId, String validator, String store, TransitionSpec transition) {
+            StateSpec state = states.get(stateIndex(stateId));
+            state.validator = validator;
+            state.store = store;
+            state.input = transition;
+            return this;
+        }
+
+        public Builder initialState(String stateId) {
+            initialState = stateId;
+            return this;
+        }
+
+        public Builder error(String text, String type) {
+            errorText = text;
+            errorType = type;
+            return this;
+        }
+
+        public USSDMenuGraph build() {
+            if (states.isEmpty()) throw new IllegalArgumentException("Menu graph " + id + " has no states");
+            return new USSDMenuGraph(this);
+        }
+
+        int stateIndex(String stateId) {
+            for (int s = 0; s < states.size(); s++) {
+                if (states.get(s).id.equals(stateId)) return s;
+            }
+            throw new IllegalArgumentException("Unknown state '" + stateId + "' in " + id);
+        }
+
+        int variableIndex(String name) {
+            for (int v = 0; v < variables.size(); v++) {
+                if (variables.get(v).name.equals(name)) return v;
+            }
+            throw new IllegalArgumentException("Unknown variable '" + name + "' in " + id);
+        }
+
+        Transition compileTransition(TransitionSpec spec) {
+            int[] setSlots = new int[spec.set.size()];
+            String[] setValues = new String[spec.set.size()];
+            int i = 0;
+            for (Map.Entry<String, String> entry : spec.set.entrySet()) {
+                setSlots[i] = variableIndex(entry.getKey());
+                if (variables.get(setSlots[i]).money) {
+                    throw new IllegalArgumentException("Cannot set money variable " + entry.getKey());
+                }
+                setValues[i] = entry.getValue();
+                i++;
+            }
+
+            int addTo = -1;
+            int addFrom = -1;
+            if (spec.addTo != null) {
+                addTo = variableIndex(spec.addTo);
+                addFrom = variableIndex(spec.addFrom);
+                if (!variables.get(addTo).money || !variables.get(addFrom).money) {
+                    throw new IllegalArgumentException("add needs money variables in " + id);
+                }
+            }
+            return new Transition(stateIndex(spec.target), setSlots, setValues, addTo, addFrom);
+        }
+
+        Template compileTemplate(String text) {
+            List<String> literals = new ArrayList<>();
+            List<Integer> slots = new ArrayList<>();
+
+            int literalStart = 0;
+            int open = text.indexOf('{');
+            while (open >= 0) {
+                int close = text.indexOf('}', open);
+                if (close < 0) break;
+
+                String name = text.substring(open + 1, close);
+                literals.add(text.substring(literalStart, open));
+                slots.add("timestamp".equals(name) ? TIMESTAMP_SLOT : variableIndex(name));
+                literalStart = close + 1;
+                open = text.indexOf('{', literalStart);
+            }
+
+            if (slots.isEmpty()) return new Template(text, null, null);
+
+            literals.add(text.substring(literalStart));
+            int[] slotArray = new int[slots.size()];
+            for (int i = 0; i < slotArray.length; i++) {
+                slotArray[i] = slots.get(i);
+            }
+            return new Template(null, literals.toArray(new String[0]), slotArray);
+        }
+    }
+}
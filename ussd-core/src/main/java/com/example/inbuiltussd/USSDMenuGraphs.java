@@ -0,0 +1,270 @@
+package com.example.inbuiltussd;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The menu graphs available to simulated sessions, by id. Starts from the built-in
+ * LOOP journeys; graphs loaded from data replace a built-in with the same id or sit
+ * alongside it. Immutable; reloading builds a new set.
+ *
+ * Data format: {@code {"graphs": [{"id", "variables": [{"name", "money", "initial"}],
+ * "initial", "error": {"text", "type"}, "states": [{"id", "text", "type", "end",
+ * "invalid", "options": {key: transition}, "input": {"validator", "store", ..transition}}]}]}},
+ * where a transition is {@code {"to", "set": {variable: value}, "add": {"to", "from"}}}.
+ */
+public final class USSDMenuGraphs {
+
+    public static final String LOOP_SIMULATOR = "loop-simulator";
+    public static final String LOOP_SERVICE = "loop-service";
+
+    private static final String WELCOME = "Welcome to the WORLD of LOOP\n\n";
+    private static final String MENU_OPTIONS =
+            "1. Deposit\n" +
+            "2. Send Money\n" +
+            "3. Pay to LOOP III\n" +
+            "4. Pay LOOP to M-PESA\n" +
+            "5. Loan & Savings\n" +
+            "6. Account Balance\n" +
+            "7. About LOOP";
+    private static final String DEPOSIT_MENU =
+            "Deposit\n\n" +
+            "1. MPESA to LOOP\n" +
+            "2. Airtel Money to LOOP\n\n" +
+            "0. Back";
+
+    private static volatile USSDMenuGraphs builtIn;
+
+    private final List<USSDMenuGraph> graphs;
+
+    public USSDMenuGraphs(List<USSDMenuGraph> loaded) {
+        List<USSDMenuGraph> merged = new ArrayList<>(loaded);
+        for (USSDMenuGraph graph : builtInGraphs()) {
+            if (find(merged, graph.getId()) == null) merged.add(graph);
+        }
+        this.graphs = Collections.unmodifiableList(merged);
+    }
+
+    public static USSDMenuGraphs builtIn() {
+        USSDMenuGraphs graphs = builtIn;
+        if (graphs == null) {
+            graphs = new USSDMenuGraphs(Collections.<USSDMenuGraph>emptyList());
+            builtIn = graphs;
+        }
+        return graphs;
+    }
+
+    /**
+     * Built-ins plus the graphs in json (format above); throws IllegalArgumentException
+     * if it is malformed or a graph does not build.
+     */
+    public static USSDMenuGraphs parse(String json) {
+        Map<String, Object> root = USSDJson.object(USSDJson.parse(json), "root");
+
+        List<USSDMenuGraph> graphs = new ArrayList<>();
+        for (Object graph : USSDJson.array(root.get("graphs"), "graphs")) {
+            graphs.add(parseGraph(USSDJson.object(graph, "graph")));
+        }
+        return new USSDMenuGraphs(graphs);
+    }
+
+    /**
+     * Graph with this id, or null.
+     */
+    public USSDMenuGraph get(String id) {
+        return find(graphs, id);
+    }
+
+    public List<USSDMenuGraph> getGraphs() { return graphs; }
+
+    private static USSDMenuGraph find(List<USSDMenuGraph> graphs, String id) {
+        for (USSDMenuGraph graph : graphs) {
+            if (graph.getId().equals(id)) return graph;
+        }
+        return null;
+    }
+
+    private static USSDMenuGraph parseGraph(Map<String, Object> graph) {
+        USSDMenuGraph.Builder builder = new USSDMenuGraph.Builder(USSDJson.string(graph.get("id"), "id"));
+
+        if (graph.containsKey("variables")) {
+            for (Object value : USSDJson.array(graph.get("variables"), "variables")) {
+                Map<String, Object> variable = USSDJson.object(value, "variable");
+                boolean money = Boolean.TRUE.equals(variable.get("money"));
+                builder.variable(USSDJson.string(variable.get("name"), "name"), money,
+                        USSDJson.optString(variable, "initial", money ? "0" : ""));
+            }
+        }
+
+        if (graph.containsKey("error")) {
+            Map<String, Object> error = USSDJson.object(graph.get("error"), "error");
+            builder.error(USSDJson.string(error.get("text"), "text"), USSDJson.optString(error, "type", "ERROR"));
+        }
+
+        // States first so transitions can point forward
+        List<Object> states = USSDJson.array(graph.get("states"), "states");
+        for (Object value : states) {
+            Map<String, Object> state = USSDJson.object(value, "state");
+            builder.state(USSDJson.string(state.get("id"), "id"), USSDJson.string(state.get("text"), "text"),
+                    USSDJson.optString(state, "type", "REQUEST"), Boolean.TRUE.equals(state.get("end")),
+                    USSDJson.optString(state, "invalid", null));
+        }
+        if (graph.containsKey("initial")) builder.initialState(USSDJson.string(graph.get("initial"), "initial"));
+
+        for (Object value : states) {
+            Map<String, Object> state = USSDJson.object(value, "state");
+            String stateId = USSDJson.string(state.get("id"), "id");
+
+            if (state.containsKey("options")) {
+                for (Map.Entry<String, Object> option : USSDJson.object(state.get("options"), "options").entrySet()) {
+                    builder.option(stateId, option.getKey(), parseTransition(USSDJson.object(option.getValue(), "option")));
+                }
+            }
+
+            if (state.containsKey("input")) {
+                Map<String, Object> input = USSDJson.object(state.get("input"), "input");
+                builder.input(stateId, USSDJson.optString(input, "validator", "any"),
+                        USSDJson.optString(input, "store", null), parseTransition(input));
+            }
+        }
+        return builder.build();
+    }
+
+    private static USSDMenuGraph.Builder.TransitionSpec parseTransition(Map<String, Object> transition) {
+        USSDMenuGraph.Builder.TransitionSpec spec = to(USSDJson.string(transition.get("to"), "to"));
+
+        if (transition.containsKey("set")) {
+            for (Map.Entry<String, Object> set : USSDJson.object(transition.get("set"), "set").entrySet()) {
+                spec.set(set.getKey(), USSDJson.string(set.getValue(), set.getKey()));
+            }
+        }
+
+        if (transition.containsKey("add")) {
+            Map<String, Object> add = USSDJson.object(transition.get("add"), "add");
+            spec.add(USSDJson.string(add.get("to"), "to"), USSDJson.string(add.get("from"), "from"));
+        }
+        return spec;
+    }
+
+    private static List<USSDMenuGraph> builtInGraphs() {
+        List<USSDMenuGraph> graphs = new ArrayList<>(2);
+        graphs.add(loopSimulator());
+        graphs.add(loopService());
+        return graphs;
+    }
+
+    /**
+     * The in-app simulator: fixed PIN, exit option, confirm screen before processing.
+     */
+    static USSDMenuGraph loopSimulator() {
+        USSDMenuGraph.Builder b = new USSDMenuGraph.Builder(LOOP_SIMULATOR)
+                .variable("provider", false, "")
+                .variable("amount", true, "0")
+                .variable("balance", true, "1500.00");
+
+        b.state("pin", WELCOME + "Enter LOOP USSD service PIN:", "REQUEST", false,
+                "Invalid PIN. Please enter correct PIN:");
+        b.state("main", WELCOME + MENU_OPTIONS + "\n\n0. Exit", "REQUEST", false,
+                "Invalid selection. Please choose 1-7 or 0 to exit:");
+        addFeatureStates(b);
+        b.state("balance", "Account Balance: KSh {balance}\n\nAvailable: KSh {balance}\n" +
+                "Loaned: KSh 0.00\n\n0. Back", "RESPONSE", false, null);
+        b.state("goodbye", "Thank you for using LOOP. Goodbye!", "RESPONSE", true, null);
+        b.state("deposit", DEPOSIT_MENU, "REQUEST", false, "Invalid selection. Choose 1 or 2:");
+        b.state("amount", "Deposit from {provider}\n\nEnter Amount:", "REQUEST", false,
+                "Invalid amount. Please enter a valid amount:");
+        // Cancelling the confirmation asks again without repeating the provider
+        b.state("amount_again", "Enter Amount:", "REQUEST", false, "Invalid amount. Please enter a valid amount:");
+        b.state("confirm", "Confirm Deposit:\n\nFrom: {provider}\nAmount: KSh {amount}\n" +
+                "To: LOOP Account\n\n1. Confirm\n0. Cancel", "REQUEST", false,
+                "Invalid choice. Enter 1 to Confirm or 0 to Cancel:");
+        b.state("processing", "Processing transaction...\n\n" +
+                "You will receive a prompt on {provider} to complete the deposit.", "REQUEST", false, null);
+        b.state("success", "✓ Deposit Successful!\n\nAmount: KSh {amount}\nFrom: {provider}\n" +
+                "New Balance: KSh {balance}\n\nTransaction ID: TXN{timestamp}\n\n" +
+                "You will receive an SMS confirmation.\n\nThank you for using LOOP!", "RESPONSE", true, null);
+
+        b.input("pin", "equals:0202", null, to("main"));
+        addMainOptions(b);
+        b.option("main", "0", to("goodbye"));
+        addDepositOptions(b);
+        b.input("amount", "amount", "amount", to("confirm"));
+        b.input("amount_again", "amount", "amount", to("confirm"));
+        b.option("confirm", "1", to("processing"));
+        b.option("confirm", "0", to("amount_again"));
+        b.input("processing", "any", null, to("success").add("balance", "amount"));
+        return b.build();
+    }
+
+    /**
+     * The InCallService journey: any 4-digit PIN, re-entered to confirm the deposit.
+     */
+    static USSDMenuGraph loopService() {
+        USSDMenuGraph.Builder b = new USSDMenuGraph.Builder(LOOP_SERVICE)
+                .variable("pin", false, "")
+                .variable("provider", false, "")
+                .variable("amount", true, "0")
+                .variable("balance", true, "1500.00")
+                .error("Invalid state. Session will be reset.", "ERROR");
+
+        b.state("pin", WELCOME + "Enter LOOP USSD service PIN:", "REQUEST", false,
+                "Invalid PIN format. Please enter 4-digit PIN:");
+        b.state("main", WELCOME + MENU_OPTIONS, "REQUEST", false, "Invalid selection. Please choose 1-7:");
+        addFeatureStates(b);
+        b.state("balance", "Your account balance is: KSh {balance}\n\n0. Back", "REQUEST", false, null);
+        b.state("deposit", DEPOSIT_MENU, "REQUEST", false, "Invalid selection. Choose 1 or 2:");
+        b.state("amount", "Deposit from {provider}\n\nEnter Amount:", "REQUEST", false,
+                "Invalid amount. Please enter a valid amount:");
+        // Cancelling the confirmation asks again without repeating the provider
+        b.state("amount_again", "Enter Amount:", "REQUEST", false, "Invalid amount. Please enter a valid amount:");
+        b.state("confirm_pin", "Enter PIN to confirm deposit of KSh {amount}:", "REQUEST", false,
+                "PIN incorrect. Please enter your PIN:");
+        b.state("success", "Deposit Successful!\n\nYou have deposited KSh {amount} to your LOOP account.\n" +
+                "New balance: KSh {balance}\n\nYou will receive an SMS confirmation shortly.\n\n" +
+                "Thank you for using LOOP!", "RESPONSE", true, null);
+
+        b.input("pin", "digits:4", "pin", to("main"));
+        addMainOptions(b);
+        addDepositOptions(b);
+        b.input("amount", "amount", "amount", to("confirm_pin"));
+        b.input("amount_again", "amount", "amount", to("confirm_pin"));
+        b.option("confirm_pin", "0", to("amount_again"));
+        b.input("confirm_pin", "matches:pin", null, to("success").add("balance", "amount"));
+        return b.build();
+    }
+
+    private static void addFeatureStates(USSDMenuGraph.Builder b) {
+        b.state("send_money", "Send Money\n\nFeature coming soon!\n\n0. Back", "REQUEST", false, null);
+        b.state("pay_loop", "Pay to LOOP III\n\nFeature coming soon!\n\n0. Back", "REQUEST", false, null);
+        b.state("pay_mpesa", "Pay LOOP to M-PESA\n\nFeature coming soon!\n\n0. Back", "REQUEST", false, null);
+        b.state("loans", "Loan & Savings\n\nFeature coming soon!\n\n0. Back", "REQUEST", false, null);
+        b.state("about", "LOOP - Mobile Money Service\nVersion 2.1.0\n\n0. Back", "REQUEST", false, null);
+    }
+
+    private static void addMainOptions(USSDMenuGraph.Builder b) {
+        b.option("main", "1", to("deposit"));
+        b.option("main", "2", to("send_money"));
+        b.option("main", "3", to("pay_loop"));
+        b.option("main", "4", to("pay_mpesa"));
+        b.option("main", "5", to("loans"));
+        b.option("main", "6", to("balance"));
+        b.option("main", "7", to("about"));
+        for (String back : new String[]{"send_money", "pay_loop", "pay_mpesa", "loans", "balance", "about"}) {
+            b.option(back, "0", to("main"));
+        }
+    }
+
+    private static void addDepositOptions(USSDMenuGraph.Builder b) {
+        b.option("deposit", "1", to("amount").set("provider", "MPESA"));
+        b.option("deposit", "2", to("amount").set("provider", "Airtel Money"));
+        b.option("deposit", "0", to("main"));
+        b.option("amount", "0", to("deposit"));
+        b.option("amount_again", "0", to("deposit"));
+    }
+
+    private static USSDMenuGraph.Builder.TransitionSpec to(String state) {
+        return new USSDMenuGraph.Builder.TransitionSpec(state);
+    }
+}
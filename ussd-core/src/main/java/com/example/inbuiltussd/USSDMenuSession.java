@@ -0,0 +1,181 @@
+package com.example.inbuiltussd;
+
+/**
+ * One session's position in a {@link USSDMenuGraph} plus its variables. Each input
+ * costs an option scan and one validator, with no regex or exceptions; screens without
+ * placeholders come back as the graph's precomputed text. Not thread-safe.
+ */
+public final class USSDMenuSession {
+
+    public interface Clock {
+        long now();
+    }
+
+    private final USSDMenuGraph graph;
+    private final Clock clock;
+    private final String[] texts;
+    private final long[] amounts;
+    private StringBuilder renderBuffer;  // created on first templated screen
+
+    private int state = -1;
+    private boolean ended = true;
+    private String type;
+
+    public USSDMenuSession(USSDMenuGraph graph) {
+        this(graph, System::currentTimeMillis);
+    }
+
+    public USSDMenuSession(USSDMenuGraph graph, Clock clock) {
+        this.graph = graph;
+        this.clock = clock;
+        this.texts = new String[graph.variableNames.length];
+        this.amounts = new long[graph.variableNames.length];
+    }
+
+    /**
+     * Resets variables and returns the initial screen.
+     */
+    public String start() {
+        System.arraycopy(graph.initialTexts, 0, texts, 0, texts.length);
+        System.arraycopy(graph.initialAmounts, 0, amounts, 0, amounts.length);
+        ended = false;
+        return enter(graph.initialState);
+    }
+
+    /**
+     * Applies the user's input and returns the next screen. Once the session has ended
+     * every input gets the graph's error screen.
+     */
+    public String onInput(String input) {
+        if (ended || state < 0) {
+            type = graph.errorType;
+            return graph.errorText;
+        }
+        if (input == null) input = "";
+
+        // Numbered options first
+        String[] keys = graph.optionKeys[state];
+        for (int o = 0; o < keys.length; o++) {
+            if (keys[o].equals(input)) return take(graph.optionTransitions[state][o]);
+        }
+
+        int kind = graph.inputKinds[state];
+        if (kind != USSDMenuGraph.INPUT_NONE) {
+            long amount = 0;
+            boolean valid;
+            switch (kind) {
+                case USSDMenuGraph.INPUT_DIGITS:
+                    valid = isDigits(input, graph.inputLengths[state]);
+                    break;
+                case USSDMenuGraph.INPUT_EQUALS:
+                    valid = graph.inputArgs[state].equals(input);
+                    break;
+                case USSDMenuGraph.INPUT_AMOUNT:
+                    amount = USSDMoneyParser.parse(input);
+                    valid = amount != USSDMoneyParser.NONE && amount > 0;
+                    break;
+                case USSDMenuGraph.INPUT_MATCHES:
+                    valid = input.equals(texts[graph.inputArgSlots[state]]);
+                    break;
+                default:
+                    valid = true;
+                    break;
+            }
+
+            if (valid) {
+                int store = graph.inputStoreSlots[state];
+                if (store >= 0) {
+                    if (graph.moneyVariables[store]) {
+                        amounts[store] = amount;
+                    } else {
+                        texts[store] = input;
+                    }
+                }
+                return take(graph.inputTransitions[state]);
+            }
+        }
+
+        // Stay put and say what was wrong
+        type = graph.types[state];
+        return render(graph.invalidTexts[state]);
+    }
+
+    public void reset() {
+        state = -1;
+        ended = true;
+    }
+
+    public boolean isEnded() { return ended; }
+    // Broadcast type of the last screen returned ("REQUEST", "RESPONSE", "ERROR")
+    public String getType() { return type; }
+
+    public String getStateId() {
+        return state >= 0 ? graph.stateIds[state] : null;
+    }
+
+    public String getText(String variable) {
+        int slot = variableSlot(variable);
+        return slot >= 0 && !graph.moneyVariables[slot] ? texts[slot] : null;
+    }
+
+    public long getAmount(String variable) {
+        int slot = variableSlot(variable);
+        return slot >= 0 && graph.moneyVariables[slot] ? amounts[slot] : USSDMoneyParser.NONE;
+    }
+
+    private String take(USSDMenuGraph.Transition transition) {
+        for (int i = 0; i < transition.setSlots.length; i++) {
+            texts[transition.setSlots[i]] = transition.setValues[i];
+        }
+        if (transition.addTo >= 0) {
+            amounts[transition.addTo] += amounts[transition.addFrom];
+        }
+        return enter(transition.target);
+    }
+
+    private String enter(int next) {
+        state = next;
+        type = graph.types[next];
+        String text = render(graph.texts[next]);
+        if (graph.ends[next]) ended = true;
+        return text;
+    }
+
+    private String render(USSDMenuGraph.Template template) {
+        if (template.constant != null) return template.constant;
+
+        if (renderBuffer == null) {
+            renderBuffer = new StringBuilder(128);
+        }
+        renderBuffer.setLength(0);
+        for (int i = 0; i < template.slots.length; i++) {
+            renderBuffer.append(template.literals[i]);
+            int slot = template.slots[i];
+            if (slot == USSDMenuGraph.TIMESTAMP_SLOT) {
+                renderBuffer.append(clock.now());
+            } else if (graph.moneyVariables[slot]) {
+                renderBuffer.append(USSDMoneyParser.format(amounts[slot]));
+            } else {
+                renderBuffer.append(texts[slot]);
+            }
+        }
+        renderBuffer.append(template.literals[template.slots.length]);
+        return renderBuffer.toString();
+    }
+
+    private int variableSlot(String variable) {
+        for (int v = 0; v < graph.variableNames.length; v++) {
+            if (graph.variableNames[v].equals(variable)) return v;
+        }
+        return -1;
+    }
+
+    private static boolean isDigits(String input, int length) {
+        if (input.length() != length) return false;
+        for (int i = 0; i < length; i++) {
+            char c = input.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.inbuiltussd;
+
+/**
+ * Hand-written scanner for currency amounts such as "KSh 1,500.00", producing long
+ * minor units (cents). Handles "KSh"/"Ksh."/"KES" prefixes and thousands separators;
+ * no regex, no boxing, no floating point.
+ */
+public final class USSDMoneyParser {
+
+    /** Returned when no amount was found. */
+    public static final long NONE = Long.MIN_VALUE;
+
+    private static final String[] CURRENCY_PREFIXES = {"ksh", "kes"};
+    private static final long MAX_MAJOR = Long.MAX_VALUE / 100;
+
+    private USSDMoneyParser() {
+    }
+
+    /**
+     * Amount typed or shown on its own ("1500", "1,500.5", "KSh 20"), or NONE if text is
+     * anything else.
+     */
+    public static long parse(CharSequence text) {
+        if (text == null) return NONE;
+
+        int end = text.length();
+        while (end > 0 && text.charAt(end - 1) <= ' ') end--;
+        int start = skipBlanks(text, 0, end);
+
+        int afterPrefix = currencyPrefixEnd(text, start, end);
+        if (afterPrefix >= 0) start = skipBlanks(text, afterPrefix, end);
+
+        return scanNumber(text, start, end, true);
+    }
+
+    /**
+     * First amount carrying a currency prefix at or after from, or NONE.
+     */
+    public static long findAmount(CharSequence text, int from) {
+        if (text == null) return NONE;
+
+        int length = text.length();
+        for (int i = Math.max(0, from); i < length; i++) {
+            int afterPrefix = currencyPrefixEnd(text, i, length);
+            if (afterPrefix < 0) continue;
+
+            long amount = scanNumber(text, skipBlanks(text, afterPrefix, length), length, false);
+            if (amount != NONE) return amount;
+        }
+        return NONE;
+    }
+
+    /**
+     * First currency amount after the (case-insensitive) label, e.g. "balance"; or NONE.
+     */
+    public static long findAmountAfter(CharSequence text, String label) {
+        int index = USSDStrings.indexOfIgnoreCase(text, label);
+        return index < 0 ? NONE : findAmount(text, index + label.length());
+    }
+
+    /**
+     * Every currency amount in text, in order, written into out; returns how many were
+     * found (at most out.length).
+     */
+    public static int findAmounts(CharSequence text, long[] out) {
+        if (text == null) return 0;
+
+        int count = 0;
+        int length = text.length();
+        for (int i = 0; i < length && count < out.length; i++) {
+            int afterPrefix = currencyPrefixEnd(text, i, length);
+            if (afterPrefix < 0) continue;
+
+            long amount = scanNumber(text, skipBlanks(text, afterPrefix, length), length, false);
+            if (amount != NONE) out[count++] = amount;
+            i = afterPrefix - 1;
+        }
+        return count;
+    }
+
+    /**
+     * "1,500.00" for 150000.
+     */
+    public static String format(long minor) {
+        StringBuilder out = new StringBuilder(16);
+        if (minor < 0) {
+            out.append('-');
+            minor = -minor;
+        }
+
+        String major = Long.toString(minor / 100);
+        int firstGroup = major.length() % 3;
+        if (firstGroup == 0) firstGroup = 3;
+        out.append(major, 0, firstGroup);
+        for (int i = firstGroup; i < major.length(); i += 3) {
+            out.append(',').append(major, i, i + 3);
+        }
+
+        long cents = minor % 100;
+        out.append('.').append((char) ('0' + cents / 10)).append((char) ('0' + cents % 10));
+        return out.toString();
+    }
+
+    /**
+     * Number at start: digits with optional comma groups of three, then an optional
+     * fraction of one or two digits. When whole is set the number must end at end.
+     */
+    private static long scanNumber(CharSequence text, int start, int end, boolean whole) {
+        long major = 0;
+        int digits = 0;
+        int groupDigits = -1;  // digits since the last comma, -1 before any comma
+        int i = start;
+
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (major > (MAX_MAJOR - 9) / 10) return NONE;
+                major = major * 10 + (c - '0');
+                digits++;
+                if (groupDigits >= 0) groupDigits++;
+            } else if (c == ',' && digits > 0 && (groupDigits < 0 ? digits <= 3 : groupDigits == 3)
+                    && i + 1 < end && isDigit(text.charAt(i + 1))) {
+                groupDigits = 0;
+            } else {
+                break;
+            }
+        }
+        if (digits == 0 || (groupDigits >= 0 && groupDigits != 3)) return NONE;
+
+        long cents = 0;
+        if (i + 1 < end && text.charAt(i) == '.' && isDigit(text.charAt(i + 1))) {
+            cents = (text.charAt(i + 1) - '0') * 10;
+            i += 2;
+            if (i < end && isDigit(text.charAt(i))) {
+                cents += text.charAt(i) - '0';
+                i++;
+            }
+            if (i < end && isDigit(text.charAt(i))) return NONE;
+        }
+
+        if (whole && i != end) return NONE;
+        return major * 100 + cents;
+    }
+
+    // Index just past a currency prefix (and an optional '.') at start, or -1
+    private static int currencyPrefixEnd(CharSequence text, int start, int end) {
+        // Must not be the tail of a longer word
+        if (start > 0 && Character.isLetter(text.charAt(start - 1))) return -1;
+
+        for (String prefix : CURRENCY_PREFIXES) {
+            if (start + prefix.length() > end) continue;
+
+            int i = 0;
+            while (i < prefix.length() && Character.toLowerCase(text.charAt(start + i)) == prefix.charAt(i)) i++;
+            if (i < prefix.length()) continue;
+
+            int after = start + i;
+            if (after < end && text.charAt(after) == '.') after++;
+            if (after < end && Character.isLetter(text.charAt(after))) continue;
+            return after;
+        }
+        return -1;
+    }
+
+    private static int skipBlanks(CharSequence text, int start, int end) {
+        while (start < end && text.charAt(start) <= ' ') start++;
+        return start;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
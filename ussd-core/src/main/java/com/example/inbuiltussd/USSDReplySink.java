@@ -0,0 +1,12 @@
+package com.example.inbuiltussd;
+
+/**
+ * Where simulated screens go: a broadcast in the app, the parsing pipeline in the load
+ * generator. Undelayed screens are delivered with the session's lock held, so they
+ * arrive in order; implementations should hand off rather than block. Screens the
+ * carrier delays arrive from the scheduler instead.
+ */
+public interface USSDReplySink {
+
+    void onReply(String sessionId, String text, String type, boolean ended);
+}
@@ -0,0 +1,173 @@
+package com.example.inbuiltussd;
+
+import java.util.Arrays;
+
+/**
+ * One USSD screen. Immutable: the type is classified up front, while fingerprint, menu,
+ * balance and input prompt are computed only when first asked for and then kept.
+ * Amounts are long minor units (cents), never floating point.
+ * Safe to share between threads.
+ */
+public final class USSDResponse {
+    private static final int MAX_AMOUNTS = 16;
+
+    private final String rawResponse;
+    private final String cleanResponse;
+    private final ResponseType type;
+    private final Action action;
+
+    // Parsed on first access
+    private volatile boolean fingerprinted;
+    private volatile long fingerprint;
+    private volatile USSDMenu menu;
+    private volatile long[] amounts;
+    private volatile boolean balanceParsed;
+    private volatile long balance;
+    private volatile String inputPrompt;
+
+    public enum ResponseType {
+        DIALING, WELCOME, PIN_PROMPT, MAIN_MENU, INPUT_REQUIRED, BALANCE_INFO,
+        TRANSACTION_SUCCESS, ERROR, UNKNOWN
+    }
+
+    // What the session does with the screen, set per rule in the rule pack
+    public enum Action {
+        NONE, AUTO_PIN, END_SESSION
+    }
+
+    public USSDResponse(String rawResponse) {
+        this(rawResponse, USSDClassifier.getDefault());
+    }
+
+    public USSDResponse(String rawResponse, USSDClassifier classifier) {
+        this.rawResponse = rawResponse != null ? rawResponse : "";
+        this.cleanResponse = USSDTextNormalizer.clean(this.rawResponse);
+        long hits = classifier.scan(cleanResponse);
+        this.type = classifier.decide(hits);
+        this.action = classifier.actionFor(hits);
+    }
+
+    private USSDResponse(String normalizedText, long fingerprint, USSDClassifier classifier) {
+        this.rawResponse = normalizedText;
+        this.cleanResponse = normalizedText;
+        long hits = classifier.scan(normalizedText);
+        this.type = classifier.decide(hits);
+        this.action = classifier.actionFor(hits);
+        this.fingerprint = fingerprint;
+        this.fingerprinted = true;
+    }
+
+    // Text already went through USSDTextNormalizer, which also produced the fingerprint
+    static USSDResponse fromNormalized(String normalizedText, long fingerprint, USSDClassifier classifier) {
+        return new USSDResponse(normalizedText, fingerprint, classifier);
+    }
+
+    public String getRawResponse() {
+        return rawResponse;
+    }
+
+    public String getCleanResponse() {
+        return cleanResponse;
+    }
+
+    public ResponseType getType() {
+        return type;
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    public boolean requiresInput() {
+        return type == ResponseType.PIN_PROMPT || type == ResponseType.MAIN_MENU
+                || type == ResponseType.INPUT_REQUIRED;
+    }
+
+    public long getFingerprint() {
+        if (!fingerprinted) {
+            fingerprint = USSDScreenFingerprint.of(cleanResponse);
+            fingerprinted = true;
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Numbered options ("1. Send Money", "2) Balance"), in screen order; EMPTY if none.
+     * Recurring menus come from the shared menu cache.
+     */
+    public USSDMenu getMenu() {
+        USSDMenu result = menu;
+        if (result == null) {
+            result = USSDMenuCache.getShared().get(getFingerprint(), cleanResponse);
+            menu = result;
+        }
+        return result;
+    }
+
+    /**
+     * Amount after "balance", else the first amount on the screen, in minor units
+     * (KSh 1,500.00 = 150000); USSDMoneyParser.NONE if there is none.
+     */
+    public long getBalance() {
+        if (!balanceParsed) {
+            balance = parseBalance();
+            balanceParsed = true;
+        }
+        return balance;
+    }
+
+    /**
+     * Every currency amount on the screen in minor units, in order.
+     */
+    public long[] getAmounts() {
+        return getAmountsInternal().clone();
+    }
+
+    private long parseBalance() {
+        long result = USSDMoneyParser.findAmountAfter(cleanResponse, "balance");
+        if (result != USSDMoneyParser.NONE) return result;
+
+        long[] all = getAmountsInternal();
+        return all.length > 0 ? all[0] : USSDMoneyParser.NONE;
+    }
+
+    private long[] getAmountsInternal() {
+        long[] result = amounts;
+        if (result == null) {
+            long[] found = new long[MAX_AMOUNTS];
+            int count = USSDMoneyParser.findAmounts(cleanResponse, found);
+            result = Arrays.copyOf(found, count);
+            amounts = result;
+        }
+        return result;
+    }
+
+    /**
+     * Last line that is not a menu option, which is where dialogs put the question;
+     * null unless the screen asks for input.
+     */
+    public String getInputPrompt() {
+        if (!requiresInput()) return null;
+
+        String result = inputPrompt;
+        if (result == null) {
+            result = parseInputPrompt(cleanResponse);
+            inputPrompt = result;
+        }
+        return result.isEmpty() ? null : result;
+    }
+
+    @Override
+    public String toString() {
+        return type + ": " + cleanResponse;
+    }
+
+    private static String parseInputPrompt(String text) {
+        String[] lines = text.split("\n");
+        for (int i = lines.length - 1; i >= 0; i--) {
+            String line = lines[i].trim();
+            if (!line.isEmpty() && !USSDMenu.isOptionLine(line)) return line;
+        }
+        return "";
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.inbuiltussd;
+
+import java.util.List;
+
+/**
+ * One operator's classification rules, compiled into a classifier when the pack is
+ * built, plus the USSD codes it applies to. A pack code such as "*219#" also covers
+ * dialed shortcuts under it ("*219*1#").
+ */
+public final class USSDRulePack {
+
+    private final String id;
+    private final String[] codes;
+    private final USSDClassifier classifier;
+
+    public USSDRulePack(String id, String[] codes, List<USSDClassifier.Rule> rules) {
+        this(id, codes, new USSDClassifier(rules));
+    }
+
+    public USSDRulePack(String id, String[] codes, USSDClassifier classifier) {
+        this.id = id;
+        this.codes = codes.clone();
+        this.classifier = classifier;
+    }
+
+    public String getId() { return id; }
+    public USSDClassifier getClassifier() { return classifier; }
+
+    public boolean matchesCode(String ussdCode) {
+        if (ussdCode == null) return false;
+
+        String dialed = ussdCode.trim();
+        for (String code : codes) {
+            String base = code.endsWith("#") ? code.substring(0, code.length() - 1) : code;
+            if (dialed.equals(code) || dialed.startsWith(base + "*")) return true;
+        }
+        return false;
+    }
+}
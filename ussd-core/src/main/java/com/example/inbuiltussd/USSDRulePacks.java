@@ -0,0 +1,118 @@
+package com.example.inbuiltussd;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The set of operator rule packs in use, with the one to fall back on when a dialed
+ * code matches none of them. Immutable; reloading builds a new set and swaps it in.
+ *
+ * The built-in set is the bundled {@code ussd_rule_packs.json} resource, parsed once on
+ * first use; it is the only rule table. Format: {@code {"default": id, "packs": [{"id",
+ * "codes": [..], "rules": [..]}]}}, rules in priority order, each one {@code {"type",
+ * "any" | "all": [..], "options": true, "action"}} (see {@link USSDClassifier.Rule}).
+ */
+public final class USSDRulePacks {
+
+    public static final String RESOURCE_NAME = "ussd_rule_packs.json";
+
+    private final List<USSDRulePack> packs;
+    private final USSDRulePack defaultPack;
+
+    public USSDRulePacks(List<USSDRulePack> packs, String defaultId) {
+        this.packs = Collections.unmodifiableList(new ArrayList<>(packs));
+
+        USSDRulePack fallback = null;
+        for (USSDRulePack pack : packs) {
+            if (pack.getId().equals(defaultId)) fallback = pack;
+        }
+        if (fallback == null) throw new IllegalArgumentException("No default pack " + defaultId);
+        this.defaultPack = fallback;
+    }
+
+    // Parsed on first use, so an app that never classifies never reads the file
+    private static final class BuiltIn {
+        static final USSDRulePacks PACKS = loadBundled();
+    }
+
+    public static USSDRulePacks builtIn() {
+        return BuiltIn.PACKS;
+    }
+
+    /**
+     * Packs from JSON in the format above; throws IllegalArgumentException if it is
+     * malformed, names an unknown type or action, or has no default pack.
+     */
+    public static USSDRulePacks parse(String json) {
+        Map<String, Object> root = USSDJson.object(USSDJson.parse(json), "root");
+        List<Object> packArray = USSDJson.array(root.get("packs"), "packs");
+
+        List<USSDRulePack> packs = new ArrayList<>(packArray.size());
+        for (Object pack : packArray) {
+            packs.add(parsePack(USSDJson.object(pack, "pack")));
+        }
+        return new USSDRulePacks(packs, USSDJson.string(root.get("default"), "default"));
+    }
+
+    public USSDRulePack forCode(String ussdCode) {
+        for (USSDRulePack pack : packs) {
+            if (pack.matchesCode(ussdCode)) return pack;
+        }
+        return defaultPack;
+    }
+
+    public List<USSDRulePack> getPacks() { return packs; }
+    public USSDRulePack getDefault() { return defaultPack; }
+
+    private static USSDRulePack parsePack(Map<String, Object> pack) {
+        String id = USSDJson.string(pack.get("id"), "id");
+        String[] codes = pack.containsKey("codes") ? USSDJson.strings(pack.get("codes"), "codes") : new String[0];
+
+        List<Object> ruleArray = USSDJson.array(pack.get("rules"), "rules");
+        List<USSDClassifier.Rule> rules = new ArrayList<>(ruleArray.size());
+        for (Object ruleValue : ruleArray) {
+            rules.add(parseRule(USSDJson.object(ruleValue, "rule")));
+        }
+        return new USSDRulePack(id, codes, rules);
+    }
+
+    private static USSDClassifier.Rule parseRule(Map<String, Object> rule) {
+        USSDResponse.ResponseType type = USSDResponse.ResponseType.valueOf(USSDJson.string(rule.get("type"), "type"));
+
+        USSDClassifier.Rule parsed;
+        if (Boolean.TRUE.equals(rule.get("options"))) {
+            parsed = USSDClassifier.Rule.menuOptions(type);
+        } else if (rule.containsKey("all")) {
+            parsed = USSDClassifier.Rule.allOf(type, USSDJson.strings(rule.get("all"), "all"));
+        } else {
+            parsed = USSDClassifier.Rule.anyOf(type, USSDJson.strings(rule.get("any"), "any"));
+        }
+
+        if (!rule.containsKey("action")) return parsed;
+        return parsed.withAction(USSDResponse.Action.valueOf(USSDJson.string(rule.get("action"), "action")));
+    }
+
+    private static USSDRulePacks loadBundled() {
+        try (InputStream in = USSDRulePacks.class.getResourceAsStream(RESOURCE_NAME)) {
+            if (in == null) throw new IllegalStateException(RESOURCE_NAME + " is not on the classpath");
+            return parse(readFully(in));
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read " + RESOURCE_NAME, e);
+        }
+    }
+
+    private static String readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toString("UTF-8");
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.inbuiltussd;
+
+/**
+ * 64-bit FNV-1a hash over a screen's normalized text: case-folded, with runs of
+ * whitespace collapsed and leading/trailing whitespace ignored. Two screens that only
+ * differ in layout whitespace or letter case get the same fingerprint.
+ */
+public final class USSDScreenFingerprint {
+
+    public static final long EMPTY = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private USSDScreenFingerprint() {
+    }
+
+    public static long of(CharSequence text) {
+        if (text == null) return EMPTY;
+
+        long hash = EMPTY;
+        boolean pendingSpace = false;
+        boolean started = false;
+
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char c = text.charAt(i);
+            if (c <= ' ' || Character.isWhitespace(c)) {
+                pendingSpace = started;
+                continue;
+            }
+            if (pendingSpace) {
+                hash = mix(hash, ' ');
+                pendingSpace = false;
+            }
+            hash = mix(hash, Character.toLowerCase(c));
+            started = true;
+        }
+        return hash;
+    }
+
+    static long mix(long hash, char c) {
+        hash ^= c & 0xff;
+        hash *= FNV_PRIME;
+        hash ^= c >>> 8;
+        hash *= FNV_PRIME;
+        return hash;
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.inbuiltussd;
+
+/**
+ * Bounded table of pre-classified responses keyed by screen fingerprint. A handful of
+ * screens (main menu, deposit menu, PIN prompt, "Invalid PIN") make up nearly all
+ * traffic; for those the shared response is returned as is, so a repeat screen is
+ * neither copied nor classified again. Least recently used entries are evicted.
+ * Entries are only valid for the classifier that built them; switching classifiers
+ * empties the table. Flat arrays with a linear scan, so lookups allocate nothing.
+ */
+public final class USSDScreenTemplates {
+
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final long[] fingerprints;
+    private final USSDResponse[] responses;
+    private final long[] lastUsed;
+    private int size = 0;
+    private long clock = 0;
+    private USSDClassifier classifier;
+
+    // Counters
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public USSDScreenTemplates() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public USSDScreenTemplates(int capacity) {
+        int slots = Math.max(1, capacity);
+        this.fingerprints = new long[slots];
+        this.responses = new USSDResponse[slots];
+        this.lastUsed = new long[slots];
+    }
+
+    /**
+     * Shared response for the screen with this fingerprint. On a miss the normalized
+     * text is copied once, classified and kept.
+     */
+    public synchronized USSDResponse get(long fingerprint, CharSequence normalizedText, USSDClassifier classifier) {
+        if (classifier != this.classifier) {
+            clear();
+            this.classifier = classifier;
+        }
+
+        clock++;
+        for (int i = 0; i < size; i++) {
+            if (fingerprints[i] == fingerprint) {
+                lastUsed[i] = clock;
+                hits++;
+                return responses[i];
+            }
+        }
+
+        misses++;
+        USSDResponse response = USSDResponse.fromNormalized(normalizedText.toString(), fingerprint, classifier);
+
+        int slot = size;
+        if (size == fingerprints.length) {
+            slot = leastRecentlyUsed();
+            evictions++;
+        } else {
+            size++;
+        }
+        fingerprints[slot] = fingerprint;
+        responses[slot] = response;
+        lastUsed[slot] = clock;
+        return response;
+    }
+
+    public synchronized void clear() {
+        for (int i = 0; i < size; i++) {
+            responses[i] = null;
+        }
+        size = 0;
+    }
+
+    public synchronized int size() { return size; }
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+
+    public synchronized void resetStats() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    public synchronized String getStatsSummary() {
+        return "entries=" + size + "/" + fingerprints.length + ", hits=" + hits + ", misses=" + misses +
+                ", evictions=" + evictions;
+    }
+
+    private int leastRecentlyUsed() {
+        int oldest = 0;
+        for (int i = 1; i < size; i++) {
+            if (lastUsed[i] < lastUsed[oldest]) oldest = i;
+        }
+        return oldest;
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.inbuiltussd;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads a log written by {@link USSDSessionRecorder} one record at a time; the
+ * current record's fields are valid until the next call to {@link #next()}. Unknown
+ * record kinds are skipped, and a torn final record (app killed mid-write) simply
+ * ends the log.
+ */
+public final class USSDSessionLogReader {
+
+    private static final USSDResponse.ResponseType[] TYPES = USSDResponse.ResponseType.values();
+
+    private final InputStream in;
+    private byte[] record = new byte[512];
+    private int length;
+    private int position;
+    private boolean truncated = false;
+
+    // Current record
+    private int kind;
+    private long deltaMs;
+    private String text;        // screen text, input, or end reason
+    private String ussdCode;
+    private String rulePackId;
+    private long wallClockMs;
+    private long fingerprint;
+    private USSDResponse.ResponseType type;
+
+    public USSDSessionLogReader(InputStream in) throws IOException {
+        this.in = in;
+        for (byte expected : USSDSessionRecorder.MAGIC) {
+            if (in.read() != expected) throw new IOException("Not a USSD session log");
+        }
+        int version = in.read();
+        if (version != USSDSessionRecorder.VERSION) throw new IOException("Unsupported log version " + version);
+    }
+
+    /**
+     * Advances to the next known record; false at the end of the log.
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            int recordLength;
+            try {
+                recordLength = readLength();
+            } catch (EOFException e) {
+                return false;
+            }
+            if (recordLength < 0) return false;
+            if (!fill(recordLength)) {
+                truncated = true;
+                return false;
+            }
+
+            kind = readByte();
+            deltaMs = readVarLong();
+            text = null;
+            switch (kind) {
+                case USSDSessionRecorder.SESSION_START:
+                    ussdCode = readString();
+                    rulePackId = readString();
+                    wallClockMs = readVarLong();
+                    return true;
+                case USSDSessionRecorder.SCREEN:
+                    fingerprint = readLong();
+                    int ordinal = readByte();
+                    type = ordinal < TYPES.length ? TYPES[ordinal] : USSDResponse.ResponseType.UNKNOWN;
+                    text = readString();
+                    return true;
+                case USSDSessionRecorder.INPUT:
+                case USSDSessionRecorder.SESSION_END:
+                    text = readString();
+                    return true;
+                default:
+                    // Written by a newer recorder; skip it
+                    break;
+            }
+        }
+    }
+
+    public boolean isSessionStart() { return kind == USSDSessionRecorder.SESSION_START; }
+    public boolean isScreen() { return kind == USSDSessionRecorder.SCREEN; }
+    public boolean isInput() { return kind == USSDSessionRecorder.INPUT; }
+    public boolean isSessionEnd() { return kind == USSDSessionRecorder.SESSION_END; }
+
+    // Milliseconds since the previous record
+    public long getDeltaMs() { return deltaMs; }
+    public String getText() { return text; }
+    public String getUssdCode() { return ussdCode; }
+    public String getRulePackId() { return rulePackId; }
+    public long getWallClockMs() { return wallClockMs; }
+    public long getFingerprint() { return fingerprint; }
+    public USSDResponse.ResponseType getType() { return type; }
+    public boolean isTruncated() { return truncated; }
+
+    // -1 at a clean end of stream
+    private int readLength() throws IOException {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                if (shift == 0) return -1;
+                truncated = true;
+                throw new EOFException();
+            }
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return result;
+        }
+        throw new IOException("Corrupt record length");
+    }
+
+    private boolean fill(int recordLength) throws IOException {
+        if (recordLength > record.length) record = new byte[Math.max(recordLength, record.length * 2)];
+        int read = 0;
+        while (read < recordLength) {
+            int count = in.read(record, read, recordLength - read);
+            if (count < 0) return false;
+            read += count;
+        }
+        length = recordLength;
+        position = 0;
+        return true;
+    }
+
+    private int readByte() throws IOException {
+        if (position >= length) throw new IOException("Corrupt record");
+        return record[position++] & 0xFF;
+    }
+
+    private long readLong() throws IOException {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | readByte();
+        }
+        return value;
+    }
+
+    private long readVarLong() throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return result;
+        }
+        throw new IOException("Corrupt varint");
+    }
+
+    private String readString() throws IOException {
+        long size = readVarLong();
+        if (size > length - position) throw new IOException("Corrupt string");
+        String value = new String(record, position, (int) size, StandardCharsets.UTF_8);
+        position += (int) size;
+        return value;
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.inbuiltussd;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes what a live session saw to a compact binary log: session start (code, rule
+ * pack, wall clock), each screen (fingerprint, classification, text), each input sent
+ * and the end. Read back with {@link USSDSessionLogReader}.
+ *
+ * Layout: "USL" + version byte, then records of {@code varint length, kind byte,
+ * varint ms since previous record, payload}. Strings are varint byte count + UTF-8,
+ * types are ResponseType ordinals (new types go at the end of the enum). Lengths let
+ * readers skip kinds they don't know and stop cleanly at a torn final record.
+ *
+ * Inputs the caller flags as sensitive (the PIN, anything typed into a password field)
+ * are stored as {@link #MASKED_INPUT}, never the value itself.
+ *
+ * A write failure is remembered and turns the recorder into a no-op, so recording
+ * never breaks the session it is watching. Not thread-safe.
+ */
+public final class USSDSessionRecorder implements Closeable {
+
+    static final byte[] MAGIC = {'U', 'S', 'L'};
+    static final int VERSION = 1;
+    public static final String MASKED_INPUT = "****";
+
+    // Record kinds
+    static final int SESSION_START = 1;
+    static final int SCREEN = 2;
+    static final int INPUT = 3;
+    static final int SESSION_END = 4;
+
+    private final OutputStream out;
+    private byte[] record = new byte[512];
+    private int length;
+    private long lastRecordMs = -1;
+    private IOException error;
+
+    // Counters
+    private int records = 0;
+    private long bytes = 0;
+
+    public USSDSessionRecorder(OutputStream out) {
+        this.out = out;
+        try {
+            out.write(MAGIC);
+            out.write(VERSION);
+            bytes += MAGIC.length + 1;
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+
+    public void startSession(String ussdCode, String rulePackId, long nowMs, long wallClockMs) {
+        begin(SESSION_START, nowMs);
+        putString(ussdCode);
+        putString(rulePackId);
+        putVarLong(wallClockMs);
+        finish();
+    }
+
+    public void screen(CharSequence text, long fingerprint, USSDResponse.ResponseType type, long nowMs) {
+        begin(SCREEN, nowMs);
+        putLong(fingerprint);
+        putByte(type.ordinal());
+        putString(text);
+        finish();
+    }
+
+    public void input(String input, boolean sensitive, long nowMs) {
+        begin(INPUT, nowMs);
+        putString(sensitive ? MASKED_INPUT : input);
+        finish();
+    }
+
+    public void endSession(String reason, long nowMs) {
+        begin(SESSION_END, nowMs);
+        putString(reason);
+        finish();
+    }
+
+    @Override
+    public void close() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            if (error == null) error = e;
+        }
+    }
+
+    public IOException getError() { return error; }
+
+    public String getStatsSummary() {
+        return "records=" + records + ", bytes=" + bytes + (error != null ? ", error=" + error.getMessage() : "");
+    }
+
+    private void begin(int kind, long nowMs) {
+        length = 0;
+        putByte(kind);
+        long delta = lastRecordMs < 0 ? 0 : Math.max(0, nowMs - lastRecordMs);
+        putVarLong(delta);
+        lastRecordMs = nowMs;
+    }
+
+    private void finish() {
+        if (error != null) return;
+        try {
+            // Length prefix, then the record body
+            int value = length;
+            while ((value & ~0x7F) != 0) {
+                out.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+                bytes++;
+            }
+            out.write(value);
+            out.write(record, 0, length);
+            bytes += 1 + length;
+            records++;
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+
+    private void ensure(int extra) {
+        if (length + extra > record.length) {
+            byte[] grown = new byte[Math.max(record.length * 2, length + extra)];
+            System.arraycopy(record, 0, grown, 0, length);
+            record = grown;
+        }
+    }
+
+    private void putByte(int value) {
+        ensure(1);
+        record[length++] = (byte) value;
+    }
+
+    private void putLong(long value) {
+        ensure(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            record[length++] = (byte) (value >>> shift);
+        }
+    }
+
+    private void putVarLong(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            record[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        record[length++] = (byte) value;
+    }
+
+    private void putString(CharSequence text) {
+        byte[] utf8 = (text != null ? text.toString() : "").getBytes(StandardCharsets.UTF_8);
+        putVarLong(utf8.length);
+        ensure(utf8.length);
+        System.arraycopy(utf8, 0, record, length, utf8.length);
+        length += utf8.length;
+    }
+}
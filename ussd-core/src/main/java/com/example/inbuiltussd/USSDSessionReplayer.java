@@ -0,0 +1,116 @@
+package com.example.inbuiltussd;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Feeds recorded sessions back through today's parsing path: each screen is normalized,
+ * fingerprinted and classified with the rule pack its USSD code selects, then compared
+ * with what was recorded on the device. A {@link Listener} sees the re-parsed screens
+ * and the recorded inputs in order, to drive session logic. Replays at the original
+ * pace, scaled by {@code speed}, or as fast as possible when speed is 0.
+ */
+public final class USSDSessionReplayer {
+
+    public interface Listener {
+        void onSessionStart(String ussdCode, String rulePackId);
+        void onScreen(USSDResponse response, USSDResponse.ResponseType recordedType);
+        void onInput(String input);
+        void onSessionEnd(String reason);
+    }
+
+    private final USSDRulePacks rulePacks;
+    private final double speed;
+    private final USSDTextNormalizer normalizer = new USSDTextNormalizer();
+    private final USSDScreenTemplates templates = new USSDScreenTemplates();
+    private USSDClassifier classifier = USSDClassifier.getDefault();
+
+    // Counters
+    private long sessions = 0;
+    private long screens = 0;
+    private long inputs = 0;
+    private long typeMismatches = 0;
+    private long fingerprintMismatches = 0;
+    private long truncatedLogs = 0;
+    private long parseNanos = 0;
+
+    public USSDSessionReplayer(USSDRulePacks rulePacks, double speed) {
+        this.rulePacks = rulePacks;
+        this.speed = speed;
+    }
+
+    /**
+     * Replays one log; listener may be null. Returns false if the thread was
+     * interrupted while pacing.
+     */
+    public boolean replay(InputStream in, Listener listener) throws IOException {
+        USSDSessionLogReader reader = new USSDSessionLogReader(in);
+        while (reader.next()) {
+            if (!pace(reader.getDeltaMs())) return false;
+
+            if (reader.isSessionStart()) {
+                sessions++;
+                classifier = rulePacks.forCode(reader.getUssdCode()).getClassifier();
+                if (listener != null) listener.onSessionStart(reader.getUssdCode(), reader.getRulePackId());
+            } else if (reader.isScreen()) {
+                USSDResponse response = parse(reader.getText());
+                screens++;
+                if (response == null) continue;
+
+                if (response.getType() != reader.getType()) typeMismatches++;
+                if (response.getFingerprint() != reader.getFingerprint()) fingerprintMismatches++;
+                if (listener != null) listener.onScreen(response, reader.getType());
+            } else if (reader.isInput()) {
+                inputs++;
+                if (listener != null) listener.onInput(reader.getText());
+            } else if (reader.isSessionEnd()) {
+                if (listener != null) listener.onSessionEnd(reader.getText());
+            }
+        }
+        if (reader.isTruncated()) truncatedLogs++;
+        return true;
+    }
+
+    public long getTypeMismatches() { return typeMismatches; }
+
+    public void resetStats() {
+        sessions = 0;
+        screens = 0;
+        inputs = 0;
+        typeMismatches = 0;
+        fingerprintMismatches = 0;
+        truncatedLogs = 0;
+        parseNanos = 0;
+        templates.resetStats();
+    }
+
+    public String getStatsSummary() {
+        return "sessions=" + sessions + ", screens=" + screens + ", inputs=" + inputs +
+                ", typeMismatches=" + typeMismatches + ", fingerprintMismatches=" + fingerprintMismatches +
+                ", truncated=" + truncatedLogs + ", avgParse=" + (screens > 0 ? parseNanos / screens : 0) + "ns" +
+                ", templates " + templates.getStatsSummary();
+    }
+
+    // Same steps as the service's readResponse
+    private USSDResponse parse(String text) {
+        long start = System.nanoTime();
+        CharSequence normalized = normalizer.normalize(text);
+        long fingerprint = normalizer.getFingerprint();
+        USSDResponse response = fingerprint == USSDScreenFingerprint.EMPTY
+                ? null
+                : templates.get(fingerprint, normalized, classifier);
+        parseNanos += System.nanoTime() - start;
+        return response;
+    }
+
+    private boolean pace(long deltaMs) {
+        if (speed <= 0 || deltaMs <= 0) return true;
+        try {
+            Thread.sleep((long) (deltaMs / speed));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
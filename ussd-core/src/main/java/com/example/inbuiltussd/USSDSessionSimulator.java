@@ -0,0 +1,195 @@
+package com.example.inbuiltussd;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simulates many concurrent USSD sessions over one menu graph, keyed by session id.
+ * Each session is a {@link USSDMenuSession} record in a concurrent map; inputs for
+ * different sessions run in parallel, inputs for the same session are serialized.
+ * Screens are delivered to a {@link USSDReplySink}, through a {@link USSDCarrier} that
+ * can delay, drop, duplicate or replace them. Sessions leave the map when their
+ * journey ends, the carrier kills them, or they are ended explicitly.
+ */
+public final class USSDSessionSimulator {
+
+    // A session and its carrier connection; also the session's lock
+    private static final class Entry {
+        final USSDMenuSession session;
+        final USSDCarrier.Line line;
+
+        Entry(USSDMenuSession session, USSDCarrier.Line line) {
+            this.session = session;
+            this.line = line;
+        }
+    }
+
+    private final USSDMenuGraph graph;
+    private final USSDReplySink sink;
+    private final USSDMenuSession.Clock clock;
+    private final USSDCarrier carrier;
+    private final USSDCarrier.Scheduler scheduler;
+    private final ConcurrentHashMap<String, Entry> sessions;
+
+    // Counters
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong inputs = new AtomicLong();
+    private final AtomicLong unknownSessions = new AtomicLong();
+
+    public USSDSessionSimulator(USSDMenuGraph graph, USSDReplySink sink) {
+        this(graph, sink, System::currentTimeMillis, 16);
+    }
+
+    public USSDSessionSimulator(USSDMenuGraph graph, USSDReplySink sink, USSDMenuSession.Clock clock,
+                                int expectedSessions) {
+        this(graph, sink, clock, expectedSessions, new USSDCarrier(USSDCarrierProfile.IDEAL, 0), USSDCarrier.INLINE);
+    }
+
+    public USSDSessionSimulator(USSDMenuGraph graph, USSDReplySink sink, USSDMenuSession.Clock clock,
+                                int expectedSessions, USSDCarrier carrier, USSDCarrier.Scheduler scheduler) {
+        this.graph = graph;
+        this.sink = sink;
+        this.clock = clock;
+        this.carrier = carrier;
+        this.scheduler = scheduler;
+        this.sessions = new ConcurrentHashMap<>(Math.max(16, expectedSessions * 4 / 3 + 1));
+    }
+
+    /**
+     * Starts (or restarts) the session and delivers its first screen.
+     */
+    public void start(String sessionId) {
+        Entry entry = new Entry(new USSDMenuSession(graph, clock), carrier.open(sessionId, clock.now()));
+        Entry previous = sessions.put(sessionId, entry);
+        if (previous != null) {
+            synchronized (previous) {
+                previous.session.reset();
+            }
+        }
+        started.incrementAndGet();
+
+        synchronized (entry) {
+            deliver(sessionId, entry, entry.session.start());
+        }
+    }
+
+    /**
+     * Applies input to the session and delivers the next screen. Unknown or finished
+     * sessions get the graph's error screen; sessions past the carrier's time limit
+     * get the MMI error.
+     */
+    public void onInput(String sessionId, String input) {
+        inputs.incrementAndGet();
+
+        Entry entry = sessions.get(sessionId);
+        if (entry == null) {
+            unknownSessions.incrementAndGet();
+            sink.onReply(sessionId, graph.errorText, graph.errorType, true);
+            return;
+        }
+
+        synchronized (entry) {
+            if (entry.line.timedOut(clock.now())) {
+                expire(sessionId, entry);
+                return;
+            }
+            deliver(sessionId, entry, entry.session.onInput(input));
+        }
+    }
+
+    /**
+     * Ends every session past the carrier's time limit, as the network would without
+     * waiting for input. Returns how many were ended.
+     */
+    public int expireSessions() {
+        long now = clock.now();
+        int expired = 0;
+        for (Map.Entry<String, Entry> mapping : sessions.entrySet()) {
+            Entry entry = mapping.getValue();
+            synchronized (entry) {
+                if (sessions.get(mapping.getKey()) == entry && entry.line.timedOut(now)) {
+                    expire(mapping.getKey(), entry);
+                    expired++;
+                }
+            }
+        }
+        return expired;
+    }
+
+    public void end(String sessionId) {
+        Entry entry = sessions.remove(sessionId);
+        if (entry != null) {
+            synchronized (entry) {
+                entry.session.reset();
+            }
+        }
+    }
+
+    public boolean isActive(String sessionId) {
+        return sessions.containsKey(sessionId);
+    }
+
+    public int getActiveSessions() { return sessions.size(); }
+    public USSDMenuGraph getGraph() { return graph; }
+    public USSDCarrier getCarrier() { return carrier; }
+
+    public void resetStats() {
+        started.set(0);
+        completed.set(0);
+        inputs.set(0);
+        unknownSessions.set(0);
+        carrier.resetStats();
+    }
+
+    public String getStatsSummary() {
+        return "active=" + sessions.size() + ", started=" + started.get() + ", completed=" + completed.get() +
+                ", inputs=" + inputs.get() + ", unknown=" + unknownSessions.get();
+    }
+
+    // Caller holds the entry's lock
+    private void deliver(String sessionId, Entry entry, String text) {
+        String type = entry.session.getType();
+        boolean ended = entry.session.isEnded();
+
+        int fault = entry.line.nextFault();
+        if (fault == USSDCarrier.DROP) {
+            // Network lost the session; the phone hears nothing
+            end(sessionId, entry);
+            return;
+        }
+        if (fault == USSDCarrier.MMI_ERROR) {
+            text = USSDCarrierProfile.MMI_ERROR_TEXT;
+            type = "ERROR";
+            ended = true;
+            end(sessionId, entry);
+        } else if (ended && sessions.remove(sessionId, entry)) {
+            completed.incrementAndGet();
+        }
+
+        long delay = entry.line.nextLatencyMs(entry.session.getStateId());
+        send(sessionId, text, type, ended, delay);
+        if (fault == USSDCarrier.DUPLICATE) {
+            send(sessionId, text, type, ended, delay);
+        }
+    }
+
+    private void expire(String sessionId, Entry entry) {
+        end(sessionId, entry);
+        sink.onReply(sessionId, USSDCarrierProfile.MMI_ERROR_TEXT, "ERROR", true);
+    }
+
+    private void end(String sessionId, Entry entry) {
+        sessions.remove(sessionId, entry);
+        entry.session.reset();
+    }
+
+    private void send(String sessionId, String text, String type, boolean ended, long delayMs) {
+        if (delayMs <= 0 || scheduler == USSDCarrier.INLINE) {
+            sink.onReply(sessionId, text, type, ended);
+        } else {
+            scheduler.schedule(() -> sink.onReply(sessionId, text, type, ended), delayMs);
+        }
+    }
+}
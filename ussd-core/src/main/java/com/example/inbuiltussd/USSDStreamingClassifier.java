@@ -0,0 +1,73 @@
+package com.example.inbuiltussd;
+
+/**
+ * Classifies a screen while it is still rendering. Text fragments (event text, patched
+ * node text) are fed as they arrive and only scanned once each; the keyword hits
+ * accumulate across fragments. An early decision is available as soon as the hits so
+ * far match a rule, so the caller need not wait for the dialog to settle; only a
+ * higher-priority rule matching later text can change it, and the final
+ * classification of the settled text confirms or corrects it.
+ * Not thread-safe.
+ */
+public final class USSDStreamingClassifier {
+
+    private USSDClassifier classifier;
+    private long hits = 0;
+    private int fragments = 0;
+    private USSDResponse.ResponseType earlyDecision;
+
+    public USSDStreamingClassifier(USSDClassifier classifier) {
+        this.classifier = classifier;
+    }
+
+    /**
+     * Starts a new screen, optionally switching rule sets.
+     */
+    public void reset(USSDClassifier classifier) {
+        this.classifier = classifier;
+        reset();
+    }
+
+    public void reset() {
+        hits = 0;
+        fragments = 0;
+        earlyDecision = null;
+    }
+
+    /**
+     * Scans one fragment. Keywords are not matched across fragment boundaries, and a
+     * menu only counts once a single fragment holds its options 1 and 2.
+     * Returns the early decision if this fragment produced a new one (a later fragment
+     * can move it, e.g. from WELCOME to PIN_PROMPT), else null.
+     */
+    public USSDResponse.ResponseType feed(CharSequence fragment) {
+        if (fragment == null || fragment.length() == 0) return null;
+        fragments++;
+
+        long before = hits;
+        hits |= classifier.scan(fragment);
+
+        if (hits == before) return null;
+        USSDResponse.ResponseType decision = classifier.decide(hits);
+        if (decision == USSDResponse.ResponseType.UNKNOWN || decision == earlyDecision) return null;
+        earlyDecision = decision;
+        return decision;
+    }
+
+    /**
+     * Type decided from the fragments so far, or null while no rule matches.
+     */
+    public USSDResponse.ResponseType getEarlyDecision() {
+        return earlyDecision;
+    }
+
+    public long getHits() { return hits; }
+    public int getFragmentCount() { return fragments; }
+
+    /**
+     * Classification of the accumulated hits by rule priority.
+     */
+    public USSDResponse.ResponseType current() {
+        return classifier.decide(hits);
+    }
+}
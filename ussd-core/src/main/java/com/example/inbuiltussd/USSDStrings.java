@@ -0,0 +1,29 @@
+package com.example.inbuiltussd;
+
+/**
+ * Case-insensitive search over CharSequences without making lowercase copies.
+ */
+public final class USSDStrings {
+
+    private USSDStrings() {
+    }
+
+    public static int indexOfIgnoreCase(CharSequence haystack, String needle) {
+        if (haystack == null) return -1;
+
+        int max = haystack.length() - needle.length();
+        for (int i = 0; i <= max; i++) {
+            int j = 0;
+            while (j < needle.length()
+                    && Character.toLowerCase(haystack.charAt(i + j)) == Character.toLowerCase(needle.charAt(j))) {
+                j++;
+            }
+            if (j == needle.length()) return i;
+        }
+        return -1;
+    }
+
+    public static boolean containsIgnoreCase(CharSequence haystack, String needle) {
+        return indexOfIgnoreCase(haystack, needle) >= 0;
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.inbuiltussd;
+
+/**
+ * Strips the debug markers older captures wrap around screen text and trims it, in a
+ * single pass with no intermediate strings. The screen fingerprint is computed in the
+ * same pass. An instance reuses its buffer and belongs to one thread; the static
+ * {@link #clean(String)} makes at most one copy.
+ *
+ * No case-folded copy is produced: the classifier and the fingerprint fold each char as
+ * they read it.
+ */
+public final class USSDTextNormalizer {
+
+    static final String[] MARKERS = {
+            "CAPTURED USSD RESPONSE", "ACCESSIBILITY EVENT", "Event Type:", "Class Name:"
+    };
+
+    private final StringBuilder buffer = new StringBuilder(256);
+    private long fingerprint = USSDScreenFingerprint.EMPTY;
+
+    /**
+     * Normalized text. Returns text itself when it has nothing to strip, otherwise a
+     * view of this normalizer's buffer that is only valid until the next call.
+     */
+    public CharSequence normalize(CharSequence text) {
+        buffer.setLength(0);
+        fingerprint = USSDScreenFingerprint.EMPTY;
+        if (text == null) return buffer;
+
+        long hash = USSDScreenFingerprint.EMPTY;
+        boolean pendingSpace = false;
+        boolean started = false;
+        boolean copying = false;
+        int start = -1;
+        int end = 0;
+
+        int length = text.length();
+        for (int i = 0; i < length; ) {
+            int markerLength = markerAt(text, i);
+            if (markerLength > 0) {
+                if (!copying) {
+                    // First marker: copy what was kept so far, then keep appending
+                    if (start >= 0) buffer.append(text, start, i);
+                    copying = true;
+                }
+                i += markerLength;
+                continue;
+            }
+
+            char c = text.charAt(i);
+            if (c <= ' ' || Character.isWhitespace(c)) {
+                pendingSpace = started;
+            } else {
+                if (pendingSpace) {
+                    hash = USSDScreenFingerprint.mix(hash, ' ');
+                    pendingSpace = false;
+                }
+                hash = USSDScreenFingerprint.mix(hash, Character.toLowerCase(c));
+                started = true;
+                if (start < 0) start = i;
+                end = i + 1;
+            }
+            if (copying) buffer.append(c);
+            i++;
+        }
+        fingerprint = hash;
+
+        if (copying) {
+            trimEnd(buffer);
+            int lead = 0;
+            while (lead < buffer.length() && buffer.charAt(lead) <= ' ') lead++;
+            if (lead > 0) buffer.delete(0, lead);
+            return buffer;
+        }
+        if (start < 0) return buffer;
+        if (start == 0 && end == length) return text;
+
+        buffer.append(text, start, end);
+        return buffer;
+    }
+
+    /**
+     * Fingerprint of the text passed to the last {@link #normalize} call; equal to
+     * {@link USSDScreenFingerprint#of} over the normalized text.
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Normalized copy of raw, or raw itself when there is nothing to strip.
+     */
+    public static String clean(String raw) {
+        if (raw == null) return "";
+
+        int length = raw.length();
+        int firstMarker = -1;
+        for (int i = 0; i < length; i++) {
+            if (markerAt(raw, i) > 0) {
+                firstMarker = i;
+                break;
+            }
+        }
+        if (firstMarker < 0) return raw.trim();
+
+        StringBuilder out = new StringBuilder(length);
+        out.append(raw, 0, firstMarker);
+        for (int i = firstMarker; i < length; ) {
+            int markerLength = markerAt(raw, i);
+            if (markerLength > 0) {
+                i += markerLength;
+            } else {
+                out.append(raw.charAt(i++));
+            }
+        }
+
+        int start = 0;
+        int end = out.length();
+        while (start < end && out.charAt(start) <= ' ') start++;
+        while (end > start && out.charAt(end - 1) <= ' ') end--;
+        return out.substring(start, end);
+    }
+
+    // Length of the marker starting at index, or 0
+    private static int markerAt(CharSequence text, int index) {
+        char c = text.charAt(index);
+        for (String marker : MARKERS) {
+            if (marker.charAt(0) == c && regionMatches(text, index, marker)) return marker.length();
+        }
+        return 0;
+    }
+
+    private static boolean regionMatches(CharSequence text, int index, String marker) {
+        if (index + marker.length() > text.length()) return false;
+        for (int i = 1; i < marker.length(); i++) {
+            if (text.charAt(index + i) != marker.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static void trimEnd(StringBuilder text) {
+        int end = text.length();
+        while (end > 0 && text.charAt(end - 1) <= ' ') end--;
+        text.setLength(end);
+    }
+}
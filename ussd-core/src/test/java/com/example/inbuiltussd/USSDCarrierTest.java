@@ -0,0 +1,124 @@
+package com.example.inbuiltussd;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class USSDCarrierTest {
+
+    private static final USSDCarrierProfile FAULTY = new USSDCarrierProfile.Builder("faulty")
+            .latency(1_000, 4_000)
+            .faults(0.1, 0.2, 0.3)
+            .build();
+
+    @Test
+    public void sameSeed_replaysTheSameSession() {
+        USSDCarrier.Line first = new USSDCarrier(USSDCarrierProfile.FLAKY, 7).open("254700000001", 0);
+        USSDCarrier.Line second = new USSDCarrier(USSDCarrierProfile.FLAKY, 7).open("254700000001", 0);
+
+        for (int i = 0; i < 500; i++) {
+            assertEquals(first.nextFault(), second.nextFault());
+            assertEquals(first.nextLatencyMs("processing"), second.nextLatencyMs("processing"));
+        }
+    }
+
+    @Test
+    public void seedAndSessionId_changeTheStream() {
+        long[] base = latencies(new USSDCarrier(FAULTY, 7).open("a", 0));
+
+        assertFalse(Arrays.equals(base, latencies(new USSDCarrier(FAULTY, 8).open("a", 0))));
+        assertFalse(Arrays.equals(base, latencies(new USSDCarrier(FAULTY, 7).open("b", 0))));
+    }
+
+    @Test
+    public void faultRates_matchTheProfile() {
+        final int screens = 200_000;
+        USSDCarrier carrier = new USSDCarrier(FAULTY, 42);
+        int[] counts = new int[4];
+        for (int s = 0; s < screens / 10; s++) {
+            USSDCarrier.Line line = carrier.open("session-" + s, 0);
+            for (int i = 0; i < 10; i++) {
+                counts[line.nextFault()]++;
+            }
+        }
+
+        assertEquals(0.1, counts[USSDCarrier.DROP] / (double) screens, 0.005);
+        assertEquals(0.2, counts[USSDCarrier.MMI_ERROR] / (double) screens, 0.005);
+        // Duplicates are rolled only for screens that survived: 0.7 * 0.3
+        assertEquals(0.21, counts[USSDCarrier.DUPLICATE] / (double) screens, 0.005);
+        assertTrue(carrier.getStatsSummary(), carrier.getStatsSummary().contains("screens=" + screens));
+    }
+
+    @Test
+    public void latency_followsMedianAndP95() {
+        final int screens = 100_000;
+        USSDCarrier.Line line = new USSDCarrier(FAULTY, 3).open("a", 0);
+        long[] delays = new long[screens];
+        for (int i = 0; i < screens; i++) {
+            delays[i] = line.nextLatencyMs("menu");
+        }
+        Arrays.sort(delays);
+
+        assertEquals(1_000, delays[screens / 2], 30);
+        assertEquals(4_000, delays[screens * 95 / 100], 150);
+        assertTrue(delays[screens - 1] <= 40_000);
+    }
+
+    @Test
+    public void stateLatency_overridesTheDefault() {
+        USSDCarrier.Line line = new USSDCarrier(USSDCarrierProfile.TYPICAL, 1).open("a", 0);
+        long[] processing = new long[2_001];
+        for (int i = 0; i < processing.length; i++) {
+            processing[i] = line.nextLatencyMs("processing");
+        }
+        Arrays.sort(processing);
+
+        assertEquals(2_000, processing[1_000], 200);
+    }
+
+    @Test
+    public void ideal_isInstantAndNeverFails() {
+        USSDCarrier.Line line = new USSDCarrier(USSDCarrierProfile.IDEAL, 9).open("a", 0);
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals(USSDCarrier.DELIVER, line.nextFault());
+            assertEquals(0, line.nextLatencyMs("processing"));
+        }
+        assertFalse(line.timedOut(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void sessionLimit_timesOutTheLine() {
+        USSDCarrier carrier = new USSDCarrier(USSDCarrierProfile.TYPICAL, 0);
+        USSDCarrier.Line line = carrier.open("a", 1_000);
+
+        assertFalse(line.timedOut(1_000 + USSDCarrierProfile.DEFAULT_SESSION_LIMIT_MS - 1));
+        assertTrue(line.timedOut(1_000 + USSDCarrierProfile.DEFAULT_SESSION_LIMIT_MS));
+        assertTrue(carrier.getStatsSummary(), carrier.getStatsSummary().contains("timeouts=1"));
+    }
+
+    @Test
+    public void forName_findsPresets() {
+        assertSame(USSDCarrierProfile.FLAKY, USSDCarrierProfile.forName("Flaky"));
+        assertNull(USSDCarrierProfile.forName("satellite"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builder_rejectsImpossibleFaultRates() {
+        new USSDCarrierProfile.Builder("broken").faults(0.6, 0.6, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builder_rejectsP95BelowMedian() {
+        new USSDCarrierProfile.Builder("broken").latency(2_000, 1_000);
+    }
+
+    private static long[] latencies(USSDCarrier.Line line) {
+        long[] delays = new long[20];
+        for (int i = 0; i < delays.length; i++) {
+            delays[i] = line.nextLatencyMs(null);
+        }
+        return delays;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.inbuiltussd;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class USSDClassifierTest {
+
+    private static final String PIN_SCREEN = "Welcome to the WORLD of LOOP\n\nEnter LOOP USSD service PIN:";
+    private static final String ABOUT_SCREEN = "LOOP - Mobile Money Service\nVersion 2.1.0\n\n0. Back";
+
+    private final USSDClassifier classifier = USSDClassifier.getDefault();
+
+    @Test
+    public void pinPrompt_outranksWelcome() {
+        assertEquals(USSDResponse.ResponseType.PIN_PROMPT, classifier.classify(PIN_SCREEN));
+        assertEquals(USSDResponse.ResponseType.PIN_PROMPT, new USSDResponse(PIN_SCREEN).getType());
+    }
+
+    @Test
+    public void keywords_matchOnlyAtWordStart() {
+        assertEquals(USSDResponse.ResponseType.UNKNOWN, classifier.classify("Go shopping with LOOP"));
+        assertEquals(USSDResponse.ResponseType.TRANSACTION_SUCCESS, classifier.classify("Deposit Successful!"));
+        assertEquals(USSDResponse.ResponseType.PIN_PROMPT, classifier.classify("Enter MPIN"));
+    }
+
+    @Test
+    public void keywords_ignoreCase() {
+        assertEquals(USSDResponse.ResponseType.BALANCE_INFO, classifier.classify("YOUR BALANCE IS KSH 20"));
+    }
+
+    @Test
+    public void failed_isError() {
+        assertEquals(USSDResponse.ResponseType.ERROR, classifier.classify("Transaction failed"));
+    }
+
+    @Test
+    public void rejectedPin_alsoMatchesError() {
+        long hits = classifier.scan("Invalid PIN. Please enter correct PIN:");
+
+        assertEquals(USSDResponse.ResponseType.PIN_PROMPT, classifier.decide(hits));
+        assertTrue(classifier.matchesType(hits, USSDResponse.ResponseType.ERROR));
+        assertFalse(classifier.matchesType(classifier.scan(PIN_SCREEN), USSDResponse.ResponseType.ERROR));
+    }
+
+    @Test
+    public void menuOptions_needNumberedLines() {
+        assertEquals(USSDResponse.ResponseType.MAIN_MENU, classifier.classify("Deposit\n\n1. MPESA to LOOP\n2. Airtel Money to LOOP"));
+        assertEquals(USSDResponse.ResponseType.MAIN_MENU, classifier.classify("1) Deposit\n2) Balance"));
+        assertEquals(USSDResponse.ResponseType.UNKNOWN, classifier.classify(ABOUT_SCREEN));
+        assertEquals(USSDResponse.ResponseType.UNKNOWN, classifier.classify("Rates 1.5% and 2.5% apply"));
+    }
+
+    @Test
+    public void allOf_needsEveryKeyword() {
+        USSDClassifier custom = new USSDClassifier(
+                USSDClassifier.Rule.allOf(USSDResponse.ResponseType.WELCOME, "welcome", "loop"));
+
+        assertEquals(USSDResponse.ResponseType.UNKNOWN, custom.classify("Welcome"));
+        assertEquals(USSDResponse.ResponseType.WELCOME, custom.classify("Welcome to LOOP"));
+    }
+
+    @Test
+    public void rules_applyInPriorityOrder() {
+        USSDClassifier custom = new USSDClassifier(
+                USSDClassifier.Rule.anyOf(USSDResponse.ResponseType.ERROR, "failed"),
+                USSDClassifier.Rule.anyOf(USSDResponse.ResponseType.TRANSACTION_SUCCESS, "completed"));
+
+        assertEquals(USSDResponse.ResponseType.ERROR, custom.classify("Completed with 1 failed item"));
+    }
+
+    @Test
+    public void streaming_agreesWithWholeText() {
+        String[] fragments = {"Welcome to the WORLD of LOOP", "Enter LOOP USSD service PIN:", "0. Exit"};
+        USSDStreamingClassifier streaming = new USSDStreamingClassifier(classifier);
+
+        assertEquals(USSDResponse.ResponseType.WELCOME, streaming.feed(fragments[0]));
+        assertEquals(USSDResponse.ResponseType.PIN_PROMPT, streaming.feed(fragments[1]));
+        assertNull(streaming.feed(fragments[2]));
+        assertEquals(classifier.classify(String.join("\n", fragments)), streaming.current());
+
+        streaming.reset();
+        assertNull(streaming.getEarlyDecision());
+        assertEquals(USSDResponse.ResponseType.UNKNOWN, streaming.current());
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.inbuiltussd;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class USSDMenuCacheTest {
+
+    private static final String MENU = "Deposit\n\n1. MPESA to LOOP\n2. Airtel Money to LOOP\n\n0. Back";
+
+    @Test
+    public void repeatScreen_isServedFromTheCache() {
+        USSDMenuCache cache = new USSDMenuCache(8);
+        long fingerprint = USSDScreenFingerprint.of(MENU);
+
+        USSDMenu first = cache.get(fingerprint, MENU);
+        assertSame(first, cache.get(fingerprint, MENU));
+        assertEquals(3, first.size());
+        assertEquals("entries=1, hits=1, misses=1", cache.getStatsSummary());
+    }
+
+    @Test
+    public void stripes_stayBounded() {
+        USSDMenuCache cache = new USSDMenuCache(8);
+        for (long fingerprint = 0; fingerprint < 100; fingerprint++) {
+            cache.get(fingerprint, MENU);
+        }
+
+        assertTrue(cache.getStatsSummary(), cache.getStatsSummary().startsWith("entries=8,"));
+        cache.clear();
+        assertTrue(cache.getStatsSummary().startsWith("entries=0,"));
+    }
+}
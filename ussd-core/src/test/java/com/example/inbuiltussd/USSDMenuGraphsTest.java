@@ -0,0 +1,70 @@
+package com.example.inbuiltussd;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class USSDMenuGraphsTest {
+
+    private static final String GRAPHS = "{\"graphs\": [{"
+            + "\"id\": \"tips\","
+            + "\"variables\": [{\"name\": \"name\"}, {\"name\": \"total\", \"money\": true, \"initial\": \"10\"},"
+            + " {\"name\": \"tip\", \"money\": true}],"
+            + "\"error\": {\"text\": \"Bye\", \"type\": \"RESPONSE\"},"
+            + "\"initial\": \"ask\","
+            + "\"states\": ["
+            + " {\"id\": \"ask\", \"text\": \"Name?\", \"invalid\": \"Name, please:\","
+            + "  \"input\": {\"validator\": \"any\", \"store\": \"name\", \"to\": \"menu\"}},"
+            + " {\"id\": \"menu\", \"text\": \"Hi {name}\\n1. Tip\", \"options\": {\"1\": {\"to\": \"tip\"}}},"
+            + " {\"id\": \"tip\", \"text\": \"Amount:\", \"invalid\": \"Amount, please:\","
+            + "  \"options\": {\"0\": {\"to\": \"menu\", \"set\": {\"name\": \"again\"}}},"
+            + "  \"input\": {\"validator\": \"amount\", \"store\": \"tip\", \"to\": \"done\","
+            + "   \"add\": {\"to\": \"total\", \"from\": \"tip\"}}},"
+            + " {\"id\": \"done\", \"text\": \"Total KSh {total}\", \"type\": \"RESPONSE\", \"end\": true}"
+            + "]}]}";
+
+    @Test
+    public void parse_buildsAWalkableGraph() {
+        USSDMenuGraphs graphs = USSDMenuGraphs.parse(GRAPHS);
+        USSDMenuSession session = new USSDMenuSession(graphs.get("tips"));
+
+        assertEquals("Name?", session.start());
+        assertEquals("Hi Ann\n1. Tip", session.onInput("Ann"));
+        session.onInput("1");
+        assertEquals("Hi again\n1. Tip", session.onInput("0"));
+        session.onInput("1");
+        assertEquals("Amount, please:", session.onInput("lots"));
+        assertEquals("Total KSh 15.50", session.onInput("5.50"));
+        assertEquals("RESPONSE", session.getType());
+        assertTrue(session.isEnded());
+        assertEquals("Bye", session.onInput("1"));
+    }
+
+    @Test
+    public void parse_keepsTheBuiltIns() {
+        USSDMenuGraphs graphs = USSDMenuGraphs.parse(GRAPHS);
+
+        assertNotNull(graphs.get(USSDMenuGraphs.LOOP_SIMULATOR));
+        assertNotNull(graphs.get(USSDMenuGraphs.LOOP_SERVICE));
+        assertEquals(3, graphs.getGraphs().size());
+    }
+
+    @Test
+    public void parse_rejectsBrokenGraphs() {
+        String[] broken = {
+                "{\"graphs\": [",
+                "{\"graphs\": [{\"id\": \"x\", \"states\": []}]}",
+                "{\"graphs\": [{\"id\": \"x\", \"states\": [{\"id\": \"a\", \"text\": \"A\","
+                        + " \"options\": {\"1\": {\"to\": \"nowhere\"}}}]}]}",
+                "{\"graphs\": [{\"id\": \"x\", \"states\": [{\"id\": \"a\", \"text\": \"{missing}\"}]}]}",
+        };
+        for (String json : broken) {
+            try {
+                USSDMenuGraphs.parse(json);
+                fail("Parsed " + json);
+            } catch (IllegalArgumentException expected) {
+                // expected
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.inbuiltussd;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class USSDMenuSessionTest {
+
+    private static final String MAIN_MENU = "Welcome to the WORLD of LOOP\n\n"
+            + "1. Deposit\n2. Send Money\n3. Pay to LOOP III\n4. Pay LOOP to M-PESA\n"
+            + "5. Loan & Savings\n6. Account Balance\n7. About LOOP";
+    private static final String DEPOSIT_MENU = "Deposit\n\n1. MPESA to LOOP\n2. Airtel Money to LOOP\n\n0. Back";
+
+    private static USSDMenuSession simulator() {
+        return new USSDMenuSession(USSDMenuGraphs.builtIn().get(USSDMenuGraphs.LOOP_SIMULATOR), () -> 42L);
+    }
+
+    private static USSDMenuSession service() {
+        return new USSDMenuSession(USSDMenuGraphs.builtIn().get(USSDMenuGraphs.LOOP_SERVICE), () -> 42L);
+    }
+
+    @Test
+    public void simulator_depositJourney() {
+        USSDMenuSession session = simulator();
+
+        assertEquals("Welcome to the WORLD of LOOP\n\nEnter LOOP USSD service PIN:", session.start());
+        assertEquals("REQUEST", session.getType());
+        assertEquals(MAIN_MENU + "\n\n0. Exit", session.onInput("0202"));
+        assertEquals(DEPOSIT_MENU, session.onInput("1"));
+        assertEquals("Deposit from Airtel Money\n\nEnter Amount:", session.onInput("2"));
+        assertEquals("Confirm Deposit:\n\nFrom: Airtel Money\nAmount: KSh 250.00\n"
+                + "To: LOOP Account\n\n1. Confirm\n0. Cancel", session.onInput("250"));
+        session.onInput("1");
+        assertEquals("processing", session.getStateId());
+
+        String success = session.onInput("");
+        assertTrue(success, success.startsWith("✓ Deposit Successful!\n\nAmount: KSh 250.00\nFrom: Airtel Money\n"
+                + "New Balance: KSh 1,750.00\n\nTransaction ID: TXN42\n"));
+        assertEquals("RESPONSE", session.getType());
+        assertTrue(session.isEnded());
+        assertEquals(175000, session.getAmount("balance"));
+    }
+
+    @Test
+    public void simulator_validatesPinAndSelections() {
+        USSDMenuSession session = simulator();
+        session.start();
+
+        assertEquals("Invalid PIN. Please enter correct PIN:", session.onInput("0303"));
+        assertEquals("pin", session.getStateId());
+        session.onInput("0202");
+        assertEquals("Invalid selection. Please choose 1-7 or 0 to exit:", session.onInput("9"));
+        assertEquals("Invalid selection. Please choose 1-7 or 0 to exit:", session.onInput("x"));
+        assertEquals("Thank you for using LOOP. Goodbye!", session.onInput("0"));
+        assertTrue(session.isEnded());
+    }
+
+    @Test
+    public void simulator_backAndCancel() {
+        USSDMenuSession session = simulator();
+        session.start();
+        session.onInput("0202");
+
+        // "0. Back" on a feature screen returns to the main menu
+        assertEquals("Send Money\n\nFeature coming soon!\n\n0. Back", session.onInput("2"));
+        assertEquals(MAIN_MENU + "\n\n0. Exit", session.onInput("0"));
+        assertTrue(session.onInput("6").startsWith("Account Balance: KSh 1,500.00\n"));
+        assertEquals("RESPONSE", session.getType());
+        assertEquals("main", stateAfter(session, "0"));
+
+        session.onInput("1");
+        session.onInput("1");
+        assertEquals(DEPOSIT_MENU, session.onInput("0"));
+        session.onInput("1");
+        assertEquals("Invalid amount. Please enter a valid amount:", session.onInput("-5"));
+        session.onInput("100");
+        assertEquals("Enter Amount:", session.onInput("0"));
+        assertEquals("amount_again", session.getStateId());
+        assertEquals(DEPOSIT_MENU, session.onInput("0"));
+    }
+
+    @Test
+    public void service_depositJourney() {
+        USSDMenuSession session = service();
+        session.start();
+
+        assertEquals("Invalid PIN format. Please enter 4-digit PIN:", session.onInput("12a4"));
+        assertEquals("Invalid PIN format. Please enter 4-digit PIN:", session.onInput("12345"));
+        assertEquals(MAIN_MENU, session.onInput("1234"));
+        assertEquals("1234", session.getText("pin"));
+        assertEquals("Your account balance is: KSh 1,500.00\n\n0. Back", session.onInput("6"));
+        assertEquals(MAIN_MENU, session.onInput("0"));
+
+        session.onInput("1");
+        session.onInput("1");
+        assertEquals("Enter PIN to confirm deposit of KSh 1,000.50:", session.onInput("1,000.50"));
+        assertEquals("PIN incorrect. Please enter your PIN:", session.onInput("4321"));
+        assertEquals("Enter Amount:", session.onInput("0"));
+        session.onInput("1000.50");
+
+        String success = session.onInput("1234");
+        assertTrue(success, success.contains("You have deposited KSh 1,000.50 to your LOOP account.\n"
+                + "New balance: KSh 2,500.50"));
+        assertTrue(session.isEnded());
+    }
+
+    @Test
+    public void errorScreen_afterEndAndBeforeStart() {
+        USSDMenuSession service = service();
+        assertEquals("Invalid state. Session will be reset.", service.onInput("1"));
+        assertEquals("ERROR", service.getType());
+
+        USSDMenuSession simulator = simulator();
+        simulator.start();
+        simulator.onInput("0202");
+        simulator.onInput("0");
+        assertEquals("Session error. Please start again.", simulator.onInput("1"));
+        assertEquals("ERROR", simulator.getType());
+
+        // start() resets the variables too
+        assertEquals("Welcome to the WORLD of LOOP\n\nEnter LOOP USSD service PIN:", simulator.start());
+        assertEquals(150000, simulator.getAmount("balance"));
+    }
+
+    private static String stateAfter(USSDMenuSession session, String input) {
+        session.onInput(input);
+        return session.getStateId();
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.inbuiltussd;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class USSDMenuTest {
+
+    @Test
+    public void parse_optionsAndTitle() {
+        USSDMenu menu = USSDMenu.parse("Welcome to LOOP\n\n1. Deposit\n2) Send Money\n  10. About LOOP\n\n0. Exit");
+
+        assertEquals("Welcome to LOOP", menu.getTitle());
+        assertEquals(4, menu.size());
+        assertEquals(1, menu.getNumber(0));
+        assertEquals("Deposit", menu.getLabel(0));
+        assertEquals("Send Money", menu.labelFor(2));
+        assertEquals("About LOOP", menu.labelFor(10));
+        assertEquals(0, menu.getNumber(3));
+        assertNull(menu.labelFor(5));
+    }
+
+    @Test
+    public void findByLabel_exactBeforeContains() {
+        USSDMenu menu = USSDMenu.parse("1. Pay LOOP to M-PESA\n2. Pay\n3. Balance");
+
+        assertEquals(2, menu.findByLabel("pay"));
+        assertEquals(1, menu.findByLabel("m-pesa"));
+        assertEquals(-1, menu.findByLabel("loans"));
+    }
+
+    @Test
+    public void parse_amountsAndVersionsAreNotOptions() {
+        assertSame(USSDMenu.EMPTY, USSDMenu.parse("Fee 1.5 KSh\nVersion 2.1.0"));
+        assertSame(USSDMenu.EMPTY, USSDMenu.parse("1.5 KSh charged"));
+        assertSame(USSDMenu.EMPTY, USSDMenu.parse(null));
+        assertTrue(USSDMenu.isOptionLine("  3. Pay"));
+        assertFalse(USSDMenu.isOptionLine("3."));
+    }
+}
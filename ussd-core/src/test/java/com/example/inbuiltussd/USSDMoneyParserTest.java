@@ -0,0 +1,62 @@
+package com.example.inbuiltussd;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class USSDMoneyParserTest {
+
+    @Test
+    public void parse_plainAndPrefixedAmounts() {
+        assertEquals(150000, USSDMoneyParser.parse("1500"));
+        assertEquals(150050, USSDMoneyParser.parse("1,500.5"));
+        assertEquals(2000, USSDMoneyParser.parse("KSh 20"));
+        assertEquals(1234567, USSDMoneyParser.parse(" Ksh. 12,345.67 "));
+    }
+
+    @Test
+    public void parse_rejectsAnythingElse() {
+        assertEquals(USSDMoneyParser.NONE, USSDMoneyParser.parse(null));
+        assertEquals(USSDMoneyParser.NONE, USSDMoneyParser.parse(""));
+        assertEquals(USSDMoneyParser.NONE, USSDMoneyParser.parse("abc"));
+        assertEquals(USSDMoneyParser.NONE, USSDMoneyParser.parse("1500 please"));
+        assertEquals(USSDMoneyParser.NONE, USSDMoneyParser.parse("1.234"));
+    }
+
+    @Test
+    public void findAmountAfter_usesTheLabel() {
+        String screen = "Deposit: KSh 50.00\nAccount Balance: KSh 1,500.00\nAvailable: KSh 200";
+
+        assertEquals(150000, USSDMoneyParser.findAmountAfter(screen, "balance"));
+        assertEquals(5000, USSDMoneyParser.findAmount(screen, 0));
+        assertEquals(USSDMoneyParser.NONE, USSDMoneyParser.findAmountAfter(screen, "loan"));
+    }
+
+    @Test
+    public void findAmounts_inScreenOrder() {
+        long[] out = new long[4];
+        int count = USSDMoneyParser.findAmounts("Sent KSh 100 to 0712345678, fee KES 5.50, balance KSh 1,394.50", out);
+
+        assertEquals(3, count);
+        assertEquals(10000, out[0]);
+        assertEquals(550, out[1]);
+        assertEquals(139450, out[2]);
+    }
+
+    @Test
+    public void format_groupsThousands() {
+        assertEquals("1,500.00", USSDMoneyParser.format(150000));
+        assertEquals("0.05", USSDMoneyParser.format(5));
+        assertEquals("-1.50", USSDMoneyParser.format(-150));
+        assertEquals("1,234,567.89", USSDMoneyParser.format(123456789));
+    }
+
+    @Test
+    public void balance_memoizedOnResponse() {
+        USSDResponse response = new USSDResponse("Account Balance: KSh 1,500.00");
+
+        assertEquals(150000, response.getBalance());
+        assertEquals(150000, response.getBalance());
+        assertEquals(USSDMoneyParser.NONE, new USSDResponse("No money here").getBalance());
+    }
+}
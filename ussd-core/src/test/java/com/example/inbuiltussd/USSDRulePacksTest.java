@@ -0,0 +1,81 @@
+package com.example.inbuiltussd;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class USSDRulePacksTest {
+
+    private static final String PACKS = "{\"default\": \"generic\", \"packs\": ["
+            + "{\"id\": \"loop\", \"codes\": [\"*219#\"], \"rules\": ["
+            + "{\"type\": \"PIN_PROMPT\", \"any\": [\"pin\"], \"action\": \"AUTO_PIN\"},"
+            + "{\"type\": \"MAIN_MENU\", \"options\": true}]},"
+            + "{\"id\": \"generic\", \"rules\": ["
+            + "{\"type\": \"ERROR\", \"all\": [\"pin\", \"wrong\"], \"action\": \"END_SESSION\"}]}]}";
+
+    @Test
+    public void matchesCode_coversShortcutsUnderTheCode() {
+        USSDRulePack loop = USSDRulePacks.parse(PACKS).getPacks().get(0);
+
+        assertTrue(loop.matchesCode("*219#"));
+        assertTrue(loop.matchesCode(" *219*1*2# "));
+        assertFalse(loop.matchesCode("*2190#"));
+        assertFalse(loop.matchesCode("*144#"));
+        assertFalse(loop.matchesCode(null));
+    }
+
+    @Test
+    public void forCode_fallsBackToTheDefaultPack() {
+        USSDRulePacks packs = USSDRulePacks.parse(PACKS);
+
+        assertEquals("loop", packs.forCode("*219*1#").getId());
+        assertEquals("generic", packs.forCode("*144#").getId());
+        assertEquals("generic", packs.forCode(null).getId());
+    }
+
+    @Test
+    public void parse_keepsRuleOrderAndActions() {
+        USSDRulePacks packs = USSDRulePacks.parse(PACKS);
+
+        USSDResponse pin = new USSDResponse("Enter PIN\n1. Retry\n2. Cancel", packs.forCode("*219#").getClassifier());
+        assertEquals(USSDResponse.ResponseType.PIN_PROMPT, pin.getType());
+        assertEquals(USSDResponse.Action.AUTO_PIN, pin.getAction());
+
+        USSDResponse wrong = new USSDResponse("Wrong PIN", packs.getDefault().getClassifier());
+        assertEquals(USSDResponse.ResponseType.ERROR, wrong.getType());
+        assertEquals(USSDResponse.Action.END_SESSION, wrong.getAction());
+
+        USSDResponse menu = new USSDResponse("1. Send\n2. Buy", packs.forCode("*219#").getClassifier());
+        assertEquals(USSDResponse.ResponseType.MAIN_MENU, menu.getType());
+        assertEquals(USSDResponse.Action.NONE, menu.getAction());
+    }
+
+    @Test
+    public void parse_rejectsBrokenFiles() {
+        String[] broken = {
+                "{\"default\": \"loop\", \"packs\": [",
+                "{\"default\": \"missing\", \"packs\": []}",
+                "{\"default\": \"a\", \"packs\": [{\"id\": \"a\", \"rules\": [{\"type\": \"NOPE\", \"any\": []}]}]}",
+                "{\"default\": \"a\", \"packs\": [{\"id\": \"a\", \"rules\": [{\"type\": \"ERROR\", \"any\": [\"x\"], \"action\": \"NOPE\"}]}]}",
+                "{\"default\": \"a\", \"packs\": [{\"id\": \"a\"}]}",
+        };
+        for (String json : broken) {
+            try {
+                USSDRulePacks.parse(json);
+                fail("Parsed " + json);
+            } catch (IllegalArgumentException expected) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void builtIn_isTheBundledFile() {
+        USSDRulePacks builtIn = USSDRulePacks.builtIn();
+
+        assertSame(builtIn, USSDRulePacks.builtIn());
+        assertSame(builtIn.getDefault().getClassifier(), USSDClassifier.getDefault());
+        assertEquals(USSDResponse.Action.AUTO_PIN, new USSDResponse("Enter PIN:").getAction());
+        assertEquals(USSDResponse.Action.END_SESSION, new USSDResponse("Transaction failed").getAction());
+    }
+}
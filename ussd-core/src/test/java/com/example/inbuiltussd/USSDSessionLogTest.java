@@ -0,0 +1,121 @@
+package com.example.inbuiltussd;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class USSDSessionLogTest {
+
+    private static final String PIN_SCREEN = "Welcome to the WORLD of LOOP\n\nEnter LOOP USSD service PIN:";
+    private static final String MENU_SCREEN = "1. Deposit\n2. Send Money\n\n✓ 0. Exit";
+
+    @Test
+    public void writeThenRead_roundTrip() throws IOException {
+        USSDSessionLogReader reader = new USSDSessionLogReader(new ByteArrayInputStream(recordSession()));
+
+        assertTrue(reader.next());
+        assertTrue(reader.isSessionStart());
+        assertEquals("*219#", reader.getUssdCode());
+        assertEquals("loop", reader.getRulePackId());
+        assertEquals(1_700_000_000_000L, reader.getWallClockMs());
+        assertEquals(0, reader.getDeltaMs());
+
+        assertTrue(reader.next());
+        assertTrue(reader.isScreen());
+        assertEquals(PIN_SCREEN, reader.getText());
+        assertEquals(USSDScreenFingerprint.of(PIN_SCREEN), reader.getFingerprint());
+        assertEquals(USSDResponse.ResponseType.PIN_PROMPT, reader.getType());
+        assertEquals(120, reader.getDeltaMs());
+
+        assertTrue(reader.next());
+        assertTrue(reader.isInput());
+        assertEquals(USSDSessionRecorder.MASKED_INPUT, reader.getText());
+
+        assertTrue(reader.next());
+        assertTrue(reader.isScreen());
+        assertEquals(MENU_SCREEN, reader.getText());
+        assertEquals(USSDResponse.ResponseType.MAIN_MENU, reader.getType());
+        assertEquals(70_000, reader.getDeltaMs());
+
+        assertTrue(reader.next());
+        assertTrue(reader.isInput());
+        assertEquals("1", reader.getText());
+
+        assertTrue(reader.next());
+        assertTrue(reader.isSessionEnd());
+        assertEquals("success", reader.getText());
+
+        assertFalse(reader.next());
+        assertFalse(reader.isTruncated());
+    }
+
+    @Test
+    public void tornFinalRecord_endsTheLog() throws IOException {
+        byte[] log = recordSession();
+        USSDSessionLogReader reader = new USSDSessionLogReader(
+                new ByteArrayInputStream(Arrays.copyOf(log, log.length - 3)));
+
+        int records = 0;
+        while (reader.next()) records++;
+
+        assertEquals(5, records);
+        assertTrue(reader.isTruncated());
+    }
+
+    @Test
+    public void input_beforeAnyScreen_isMaskedByFlagAlone() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        USSDSessionRecorder recorder = new USSDSessionRecorder(out);
+        // An early PIN can be submitted before its screen settles and is recorded
+        recorder.input("0303", true, 100);
+        recorder.input("1", false, 200);
+        recorder.close();
+
+        USSDSessionLogReader reader = new USSDSessionLogReader(new ByteArrayInputStream(out.toByteArray()));
+        assertTrue(reader.next());
+        assertTrue(reader.isInput());
+        assertEquals(USSDSessionRecorder.MASKED_INPUT, reader.getText());
+        assertTrue(reader.next());
+        assertEquals("1", reader.getText());
+        assertEquals(100, reader.getDeltaMs());
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void sensitiveInput_isMaskedWhateverTheScreenType() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        USSDSessionRecorder recorder = new USSDSessionRecorder(out);
+        recorder.screen(MENU_SCREEN, USSDScreenFingerprint.of(MENU_SCREEN), USSDResponse.ResponseType.MAIN_MENU, 0);
+        recorder.input("4821", true, 10);
+        recorder.close();
+
+        USSDSessionLogReader reader = new USSDSessionLogReader(new ByteArrayInputStream(out.toByteArray()));
+        assertTrue(reader.next());
+        assertTrue(reader.next());
+        assertEquals(USSDSessionRecorder.MASKED_INPUT, reader.getText());
+    }
+
+    @Test(expected = IOException.class)
+    public void otherFiles_areRejected() throws IOException {
+        new USSDSessionLogReader(new ByteArrayInputStream("PK\3\4".getBytes("UTF-8")));
+    }
+
+    private static byte[] recordSession() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        USSDSessionRecorder recorder = new USSDSessionRecorder(out);
+        recorder.startSession("*219#", "loop", 1000, 1_700_000_000_000L);
+        recorder.screen(PIN_SCREEN, USSDScreenFingerprint.of(PIN_SCREEN), USSDResponse.ResponseType.PIN_PROMPT, 1120);
+        recorder.input("0303", true, 1500);
+        recorder.screen(MENU_SCREEN, USSDScreenFingerprint.of(MENU_SCREEN), USSDResponse.ResponseType.MAIN_MENU, 71500);
+        recorder.input("1", false, 72000);
+        recorder.endSession("success", 73000);
+        recorder.close();
+        assertNull(recorder.getError());
+        return out.toByteArray();
+    }
+}
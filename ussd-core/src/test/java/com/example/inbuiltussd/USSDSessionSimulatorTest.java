@@ -0,0 +1,220 @@
+package com.example.inbuiltussd;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class USSDSessionSimulatorTest {
+
+    private static final String[] DEPOSIT = {"1234", "1", "1", "100", "1234"};
+    private static final String PIN_PROMPT = "Welcome to the WORLD of LOOP\n\nEnter LOOP USSD service PIN:";
+    private static final String BAD_PIN = "Invalid PIN format. Please enter 4-digit PIN:";
+    // Typical latency and session limit, no random faults
+    private static final USSDCarrierProfile RELIABLE =
+            new USSDCarrierProfile.Builder("reliable", USSDCarrierProfile.TYPICAL).faults(0, 0, 0).build();
+
+    // Keeps every reply, per session, in arrival order
+    private static final class RecordingSink implements USSDReplySink {
+        final Map<String, List<String>> texts = new ConcurrentHashMap<>();
+        final AtomicInteger replies = new AtomicInteger();
+        final AtomicInteger ended = new AtomicInteger();
+        String lastType;
+
+        @Override
+        public void onReply(String sessionId, String text, String type, boolean ended) {
+            texts.computeIfAbsent(sessionId, id -> new ArrayList<>()).add(text);
+            replies.incrementAndGet();
+            if (ended) this.ended.incrementAndGet();
+            lastType = type;
+        }
+
+        String last(String sessionId) {
+            List<String> session = texts.get(sessionId);
+            return session.get(session.size() - 1);
+        }
+    }
+
+    private final RecordingSink sink = new RecordingSink();
+
+    private USSDSessionSimulator simulator() {
+        return new USSDSessionSimulator(USSDMenuGraphs.builtIn().get(USSDMenuGraphs.LOOP_SERVICE), sink, () -> 42L, 4);
+    }
+
+    private USSDSessionSimulator simulator(USSDCarrierProfile profile, USSDMenuSession.Clock clock) {
+        return new USSDSessionSimulator(USSDMenuGraphs.builtIn().get(USSDMenuGraphs.LOOP_SERVICE), sink, clock, 4,
+                new USSDCarrier(profile, 1), USSDCarrier.INLINE);
+    }
+
+    @Test
+    public void sessions_keepTheirOwnStateAndOrder() {
+        USSDSessionSimulator simulator = simulator();
+        simulator.start("a");
+        simulator.start("b");
+
+        simulator.onInput("a", "1234");
+        simulator.onInput("b", "1");
+        simulator.onInput("a", "1");
+
+        assertEquals(3, sink.texts.get("a").size());
+        assertEquals(PIN_PROMPT, sink.texts.get("a").get(0));
+        assertTrue(sink.texts.get("a").get(1).endsWith("7. About LOOP"));
+        assertTrue(sink.last("a").startsWith("Deposit\n"));
+        // b is still at its PIN prompt
+        assertEquals(BAD_PIN, sink.last("b"));
+        assertEquals(2, simulator.getActiveSessions());
+    }
+
+    @Test
+    public void restart_replacesTheExistingSession() {
+        USSDSessionSimulator simulator = simulator();
+        simulator.start("a");
+        simulator.onInput("a", "1234");
+
+        simulator.start("a");
+        assertEquals(PIN_PROMPT, sink.last("a"));
+        simulator.onInput("a", "1");
+        assertEquals(BAD_PIN, sink.last("a"));
+        assertEquals(1, simulator.getActiveSessions());
+    }
+
+    @Test
+    public void finishedSessions_leaveTheMap() {
+        USSDSessionSimulator simulator = simulator();
+        simulator.start("a");
+        simulator.start("b");
+
+        for (String input : DEPOSIT) {
+            simulator.onInput("a", input);
+        }
+        assertEquals(1, sink.ended.get());
+        assertEquals("RESPONSE", sink.lastType);
+        assertFalse(simulator.isActive("a"));
+
+        simulator.end("b");
+        assertFalse(simulator.isActive("b"));
+        assertEquals(0, simulator.getActiveSessions());
+    }
+
+    @Test
+    public void unknownSession_getsTheErrorScreen() {
+        USSDSessionSimulator simulator = simulator();
+
+        simulator.onInput("nobody", "1");
+        assertEquals("Invalid state. Session will be reset.", sink.last("nobody"));
+        assertEquals("ERROR", sink.lastType);
+        assertEquals(1, sink.ended.get());
+        assertTrue(simulator.getStatsSummary(), simulator.getStatsSummary().contains("unknown=1"));
+    }
+
+    @Test
+    public void carrierDrop_endsTheSessionSilently() {
+        USSDCarrierProfile dropAll = new USSDCarrierProfile.Builder("drop").faults(1, 0, 0).build();
+        USSDSessionSimulator simulator = simulator(dropAll, () -> 42L);
+
+        simulator.start("a");
+        assertNull(sink.texts.get("a"));
+        assertFalse(simulator.isActive("a"));
+    }
+
+    @Test
+    public void carrierMmiError_replacesTheScreenAndEnds() {
+        USSDCarrierProfile mmiAll = new USSDCarrierProfile.Builder("mmi").faults(0, 1, 0).build();
+        USSDSessionSimulator simulator = simulator(mmiAll, () -> 42L);
+
+        simulator.start("a");
+        assertEquals(USSDCarrierProfile.MMI_ERROR_TEXT, sink.last("a"));
+        assertEquals("ERROR", sink.lastType);
+        assertEquals(1, sink.ended.get());
+        assertFalse(simulator.isActive("a"));
+    }
+
+    @Test
+    public void carrierDuplicate_deliversTheScreenTwice() {
+        USSDCarrierProfile twice = new USSDCarrierProfile.Builder("twice").faults(0, 0, 1).build();
+        USSDSessionSimulator simulator = simulator(twice, () -> 42L);
+
+        simulator.start("a");
+        assertEquals(Arrays.asList(PIN_PROMPT, PIN_PROMPT), sink.texts.get("a"));
+    }
+
+    @Test
+    public void sessionLimit_expiresOnInput() {
+        AtomicLong now = new AtomicLong(0);
+        USSDSessionSimulator simulator = simulator(RELIABLE, now::get);
+
+        simulator.start("a");
+        now.set(USSDCarrierProfile.DEFAULT_SESSION_LIMIT_MS);
+        simulator.onInput("a", "1234");
+
+        assertEquals(USSDCarrierProfile.MMI_ERROR_TEXT, sink.last("a"));
+        assertFalse(simulator.isActive("a"));
+    }
+
+    @Test
+    public void expireSessions_endsOnlyThoseOverTheLimit() {
+        AtomicLong now = new AtomicLong(0);
+        USSDSessionSimulator simulator = simulator(RELIABLE, now::get);
+
+        simulator.start("old");
+        now.set(USSDCarrierProfile.DEFAULT_SESSION_LIMIT_MS / 2);
+        simulator.start("new");
+        now.set(USSDCarrierProfile.DEFAULT_SESSION_LIMIT_MS);
+
+        assertEquals(1, simulator.expireSessions());
+        assertEquals(USSDCarrierProfile.MMI_ERROR_TEXT, sink.last("old"));
+        assertFalse(simulator.isActive("old"));
+        assertTrue(simulator.isActive("new"));
+        assertEquals(PIN_PROMPT, sink.last("new"));
+    }
+
+    @Test
+    public void concurrentSessions_allComplete() throws Exception {
+        final int threads = 8;
+        final int sessionsPerThread = 250;
+        USSDSessionSimulator simulator = simulator();
+        CountDownLatch go = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int worker = t;
+            workers.add(pool.submit(() -> {
+                go.await();
+                for (int s = 0; s < sessionsPerThread; s++) {
+                    String sessionId = worker + "-" + s;
+                    simulator.start(sessionId);
+                    for (String input : DEPOSIT) {
+                        simulator.onInput(sessionId, input);
+                    }
+                }
+                return null;
+            }));
+        }
+        go.countDown();
+        for (Future<?> worker : workers) {
+            worker.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        int sessions = threads * sessionsPerThread;
+        assertEquals(sessions * (DEPOSIT.length + 1), sink.replies.get());
+        assertEquals(sessions, sink.ended.get());
+        for (List<String> texts : sink.texts.values()) {
+            assertTrue(texts.get(texts.size() - 1).contains("New balance: KSh 1,600.00"));
+        }
+        assertEquals(0, simulator.getActiveSessions());
+    }
+}
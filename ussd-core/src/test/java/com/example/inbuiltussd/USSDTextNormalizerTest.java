@@ -0,0 +1,50 @@
+package com.example.inbuiltussd;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class USSDTextNormalizerTest {
+
+    private static final String CAPTURED = "CAPTURED USSD RESPONSE\n  Account Balance: KSh 1,500.00\n\n0. Back  ";
+
+    private final USSDTextNormalizer normalizer = new USSDTextNormalizer();
+
+    @Test
+    public void normalize_stripsMarkersLikeClean() {
+        String normalized = normalizer.normalize(CAPTURED).toString();
+
+        assertEquals("Account Balance: KSh 1,500.00\n\n0. Back", normalized);
+        assertEquals(USSDTextNormalizer.clean(CAPTURED), normalized);
+    }
+
+    @Test
+    public void fingerprint_equalsFingerprintOfNormalizedText() {
+        String normalized = normalizer.normalize(CAPTURED).toString();
+
+        assertEquals(USSDScreenFingerprint.of(normalized), normalizer.getFingerprint());
+    }
+
+    @Test
+    public void fingerprint_ignoresLayoutWhitespaceAndCase() {
+        long fingerprint = USSDScreenFingerprint.of("Enter Amount:\n1. Back");
+
+        assertEquals(fingerprint, USSDScreenFingerprint.of("  enter   AMOUNT:\r\n\t1. back \n"));
+        assertNotEquals(fingerprint, USSDScreenFingerprint.of("Enter Amount: 1 Back"));
+    }
+
+    @Test
+    public void normalize_returnsCleanTextItself() {
+        String text = "1. Deposit\n2. Send Money";
+
+        assertSame(text, normalizer.normalize(text));
+        assertEquals(USSDScreenFingerprint.of(text), normalizer.getFingerprint());
+    }
+
+    @Test
+    public void normalize_emptyText() {
+        assertEquals(0, normalizer.normalize("  \n ").length());
+        assertEquals(USSDScreenFingerprint.EMPTY, normalizer.getFingerprint());
+        assertEquals(0, normalizer.normalize(null).length());
+    }
+}
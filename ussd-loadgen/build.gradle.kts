@@ -0,0 +1,17 @@
+plugins {
+    application
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    implementation(project(":ussd-core"))
+}
+
+// ./gradlew :ussd-loadgen:run --args="--subscribers 10000 --threads 8 --journey mixed"
+application {
+    mainClass.set("com.example.inbuiltussd.USSDLoadGenerator")
+}
@@ -0,0 +1,292 @@
+package com.example.inbuiltussd;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headless capacity test: drives N virtual subscribers through scripted journeys on
+ * the session simulator, parses every screen like the service does, and reports
+ * throughput and per-input latency percentiles. Each worker thread owns a slice of
+ * the subscribers and moves them forward one step at a time, so the whole population
+ * is mid-journey at once. A carrier profile injects its faults; its latencies are
+ * sampled and reported but not slept, so runs stay fast.
+ *
+ * With --replay it instead feeds session logs recorded on devices back through the
+ * parser and reports throughput and classification drift.
+ */
+public final class USSDLoadGenerator {
+
+    /**
+     * Inputs sent after the first screen, and how the journey must finish.
+     */
+    static final class Journey {
+        final String[] inputs;
+        final USSDResponse.ResponseType expectedLast;  // null: only check the session ended
+
+        Journey(USSDResponse.ResponseType expectedLast, String... inputs) {
+            this.inputs = inputs;
+            this.expectedLast = expectedLast;
+        }
+    }
+
+    // PIN -> menu -> deposit -> provider -> amount -> confirm -> receipt
+    static final Journey DEPOSIT = new Journey(USSDResponse.ResponseType.TRANSACTION_SUCCESS,
+            "0202", "1", "1", "1500", "1", "ok");
+    // Wrong PIN, balance, back, exit
+    static final Journey BALANCE = new Journey(null,
+            "1111", "0202", "6", "0", "0");
+
+    private static final String USAGE =
+            "usage: USSDLoadGenerator [--subscribers N] [--threads N] [--rounds N] [--warmup N]\n" +
+            "                         [--journey deposit|balance|mixed] [--carrier ideal|typical|flaky]\n" +
+            "                         [--seed N] [--session-limit-ms N]\n" +
+            "       USSDLoadGenerator --replay <file.ussdlog|dir> [--speed X]   (X=0: as fast as possible)";
+
+    private final int subscribers;
+    private final int threads;
+    private final Journey[] journeys;
+    private final USSDCarrierProfile carrierProfile;
+    private final long seed;
+
+    private final AtomicLong failures = new AtomicLong();
+
+    USSDLoadGenerator(int subscribers, int threads, Journey[] journeys, USSDCarrierProfile carrierProfile, long seed) {
+        this.subscribers = subscribers;
+        this.threads = threads;
+        this.journeys = journeys;
+        this.carrierProfile = carrierProfile;
+        this.seed = seed;
+    }
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        int subscribers = 10_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int rounds = 5;
+        int warmup = 2;
+        String journey = "mixed";
+        USSDCarrierProfile carrierProfile = USSDCarrierProfile.IDEAL;
+        long seed = 1;
+        int sessionLimitMs = -1;
+        String replay = null;
+        double speed = 0;
+
+        for (int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            switch (args[i++]) {
+                case "--subscribers": subscribers = count(value, 1); break;
+                case "--threads": threads = count(value, 1); break;
+                case "--rounds": rounds = count(value, 1); break;
+                case "--warmup": warmup = count(value, 0); break;
+                case "--journey": journey = value; break;
+                case "--carrier": carrierProfile = USSDCarrierProfile.forName(value); break;
+                case "--seed": seed = count(value, 0); break;
+                case "--session-limit-ms": sessionLimitMs = count(value, 0); break;
+                case "--replay": replay = value; break;
+                case "--speed": speed = speed(value); break;
+                default: usage(); break;
+            }
+        }
+
+        if (replay != null) {
+            System.exit(replay(new File(replay), speed) ? 0 : 1);
+        }
+
+        Journey[] journeys;
+        switch (String.valueOf(journey)) {
+            case "deposit": journeys = new Journey[]{DEPOSIT}; break;
+            case "balance": journeys = new Journey[]{BALANCE}; break;
+            case "mixed": journeys = new Journey[]{DEPOSIT, BALANCE}; break;
+            default:
+                usage();
+                return;
+        }
+
+        if (carrierProfile == null) usage();
+        if (sessionLimitMs >= 0) {
+            carrierProfile = new USSDCarrierProfile.Builder(carrierProfile.getName(), carrierProfile)
+                    .sessionLimit(sessionLimitMs).build();
+        }
+
+        USSDLoadGenerator generator = new USSDLoadGenerator(subscribers, threads, journeys, carrierProfile, seed);
+        System.out.println("USSD load: " + subscribers + " subscribers on " + threads + " threads, journey=" + journey +
+                ", carrier=" + carrierProfile.getName() + ", seed=" + seed);
+
+        for (int round = 0; round < warmup; round++) {
+            generator.runRound();
+        }
+        for (int round = 1; round <= rounds; round++) {
+            System.out.println("round " + round + ": " + generator.runRound());
+        }
+    }
+
+    /**
+     * One journey per subscriber against a fresh simulator; returns the report line.
+     */
+    String runRound() throws InterruptedException {
+        USSDParsingSink sink = new USSDParsingSink(USSDClassifier.getDefault());
+        USSDSessionSimulator simulator = new USSDSessionSimulator(
+                USSDMenuGraphs.builtIn().get(USSDMenuGraphs.LOOP_SIMULATOR), sink,
+                System::currentTimeMillis, subscribers, new USSDCarrier(carrierProfile, seed), USSDCarrier.INLINE);
+        failures.set(0);
+
+        long[][] latencies = new long[threads][];
+        CountDownLatch done = new CountDownLatch(threads);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            final int worker = t;
+            Thread thread = new Thread(() -> {
+                latencies[worker] = drive(simulator, sink, worker);
+                done.countDown();
+            }, "ussd-loadgen-" + t);
+            thread.start();
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+
+        long[] all = merge(latencies);
+        Arrays.sort(all);
+        double seconds = elapsed / 1e9;
+        return String.format(Locale.ROOT,
+                "%d inputs in %.0f ms, %.0f inputs/s, %.0f journeys/s | latency us p50=%.1f p90=%.1f " +
+                        "p99=%.1f p99.9=%.1f max=%.1f | failed=%d | %s | carrier %s | templates %s",
+                all.length, elapsed / 1e6, all.length / seconds, subscribers / seconds,
+                percentile(all, 0.50), percentile(all, 0.90), percentile(all, 0.99), percentile(all, 0.999),
+                all.length > 0 ? all[all.length - 1] / 1e3 : 0.0,
+                failures.get(), simulator.getStatsSummary(), simulator.getCarrier().getStatsSummary(),
+                sink.getTemplateStats());
+    }
+
+    /**
+     * Replays every log at path; false if any screen now classifies differently.
+     */
+    static boolean replay(File path, double speed) throws IOException {
+        File[] files = path.isDirectory()
+                ? path.listFiles((dir, name) -> name.endsWith(".ussdlog"))
+                : new File[]{path};
+        if (files == null || files.length == 0 || !files[0].isFile()) {
+            System.err.println("No session logs at " + path);
+            return false;
+        }
+        Arrays.sort(files);
+
+        USSDSessionReplayer replayer = new USSDSessionReplayer(USSDRulePacks.builtIn(), speed);
+        long start = System.nanoTime();
+        for (File file : files) {
+            try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+                replayer.replay(in, null);
+            } catch (IOException e) {
+                System.err.println(file + ": " + e.getMessage());
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println(String.format(Locale.ROOT, "replayed %d logs in %.2f s at speed %s | %s",
+                files.length, seconds, speed > 0 ? speed + "x" : "max", replayer.getStatsSummary()));
+        return replayer.getTypeMismatches() == 0;
+    }
+
+    // Latency of every start/input this worker sent, in nanoseconds
+    private long[] drive(USSDSessionSimulator simulator, USSDParsingSink sink, int worker) {
+        int first = worker;
+        int count = 0;
+        for (int s = first; s < subscribers; s += threads) count++;
+
+        String[] ids = new String[count];
+        Journey[] assigned = new Journey[count];
+        int longest = 0;
+        for (int i = 0; i < count; i++) {
+            int subscriber = first + i * threads;
+            ids[i] = "sub-" + subscriber;
+            assigned[i] = journeys[subscriber % journeys.length];
+            longest = Math.max(longest, assigned[i].inputs.length);
+        }
+
+        long[] samples = new long[count * (longest + 1)];
+        int sampleCount = 0;
+        USSDParsingSink.Result result = sink.result();
+
+        // Step 0 opens every session, step k sends each journey's k-th input
+        for (int step = 0; step <= longest; step++) {
+            for (int i = 0; i < count; i++) {
+                Journey journey = assigned[i];
+                if (step > journey.inputs.length) continue;
+
+                // A dropped session sends nothing back
+                result.ended = false;
+                result.error = false;
+
+                long t0 = System.nanoTime();
+                if (step == 0) {
+                    simulator.start(ids[i]);
+                } else {
+                    simulator.onInput(ids[i], journey.inputs[step - 1]);
+                }
+                samples[sampleCount++] = System.nanoTime() - t0;
+
+                if (step == journey.inputs.length && !finishedAsExpected(journey, result)) {
+                    failures.incrementAndGet();
+                }
+            }
+        }
+        return sampleCount == samples.length ? samples : Arrays.copyOf(samples, sampleCount);
+    }
+
+    private static boolean finishedAsExpected(Journey journey, USSDParsingSink.Result result) {
+        return result.ended && !result.error && (journey.expectedLast == null || journey.expectedLast == result.type);
+    }
+
+    private static long[] merge(long[][] parts) {
+        int total = 0;
+        for (long[] part : parts) total += part.length;
+
+        long[] all = new long[total];
+        int offset = 0;
+        for (long[] part : parts) {
+            System.arraycopy(part, 0, all, offset, part.length);
+            offset += part.length;
+        }
+        return all;
+    }
+
+    // Nearest-rank percentile of sorted nanosecond samples, in microseconds
+    private static double percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(rank, sorted.length - 1))] / 1e3;
+    }
+
+    private static int count(String value, int min) {
+        if (value == null || value.isEmpty() || value.length() > 9) usage();
+        int result = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') usage();
+            result = result * 10 + (c - '0');
+        }
+        if (result < min) usage();
+        return result;
+    }
+
+    private static double speed(String value) {
+        try {
+            double speed = Double.parseDouble(value);
+            if (speed >= 0) return speed;
+        } catch (NullPointerException | NumberFormatException e) {
+            // fall through to usage
+        }
+        usage();
+        return 0;
+    }
+
+    private static void usage() {
+        System.err.println(USAGE);
+        System.exit(2);
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.inbuiltussd;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Feeds every simulated screen through the same path the accessibility service uses:
+ * single-pass normalize and fingerprint, then the template table. The screen lands on
+ * the thread that sent the input, so each worker reads its own result back, and each
+ * worker has its own table: a miss classifies without blocking the other workers.
+ */
+final class USSDParsingSink implements USSDReplySink {
+
+    /**
+     * What the last screen on this thread was classified as.
+     */
+    static final class Result {
+        final USSDTextNormalizer normalizer = new USSDTextNormalizer();
+        final USSDScreenTemplates templates = new USSDScreenTemplates();
+        USSDResponse.ResponseType type;
+        boolean ended;
+        boolean error;  // session or carrier error screen
+    }
+
+    private final USSDClassifier classifier;
+    // Every worker's result, for the template stats
+    private final List<Result> workers = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<Result> results = ThreadLocal.withInitial(() -> {
+        Result result = new Result();
+        workers.add(result);
+        return result;
+    });
+
+    USSDParsingSink(USSDClassifier classifier) {
+        this.classifier = classifier;
+    }
+
+    @Override
+    public void onReply(String sessionId, String text, String type, boolean ended) {
+        Result result = results.get();
+        CharSequence normalized = result.normalizer.normalize(text);
+        long fingerprint = result.normalizer.getFingerprint();
+
+        result.type = fingerprint == USSDScreenFingerprint.EMPTY
+                ? USSDResponse.ResponseType.UNKNOWN
+                : result.templates.get(fingerprint, normalized, classifier).getType();
+        result.ended = ended;
+        result.error = "ERROR".equals(type);
+    }
+
+    Result result() {
+        return results.get();
+    }
+
+    String getTemplateStats() {
+        long hits = 0;
+        long misses = 0;
+        for (Result worker : workers) {
+            hits += worker.templates.getHits();
+            misses += worker.templates.getMisses();
+        }
+        return "tables=" + workers.size() + ", hits=" + hits + ", misses=" + misses;
+    }
+}